@@ -0,0 +1,74 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks with the GC profiler so the results include the
+ * normalized allocation rate (gc.alloc.rate.norm) next to the throughput.
+ * All standard JMH command line options are supported.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class Main
+{
+    /**
+     * Hide constructor
+     */
+
+    private Main()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args
+     *            The JMH command line options
+     * @throws RunnerException
+     *             When running the benchmarks fails
+     * @throws CommandLineOptionException
+     *             When the command line options are invalid
+     */
+
+    public static void main(final String[] args) throws RunnerException,
+        CommandLineOptionException
+    {
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Creates the representative payload shapes used by the benchmarks.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public final class Payloads
+{
+    /** A flat list of integers */
+    public static final String INT_LIST = "intList";
+
+    /** A wide map with string keys and string values */
+    public static final String STRING_MAP = "stringMap";
+
+    /** Deeply nested small arrays */
+    public static final String DEEP_NESTING = "deepNesting";
+
+    /** A list of plain Java objects */
+    public static final String POJO_LIST = "pojoList";
+
+    /** A list referencing a few shared arrays many times */
+    public static final String REFERENCES = "references";
+
+    /** A list of strings with multibyte UTF-8 characters */
+    public static final String UTF8_STRINGS = "utf8Strings";
+
+    /** The number of elements of the flat payloads */
+    private static final int SIZE = 10000;
+
+    /** The nesting depth of the deep payload */
+    private static final int DEPTH = 10;
+
+
+    /**
+     * Hide constructor
+     */
+
+    private Payloads()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Creates the payload with the specified shape.
+     *
+     * @param shape
+     *            The shape name
+     * @return The payload
+     */
+
+    public static Object create(final String shape)
+    {
+        if (shape.equals(INT_LIST)) return createIntList();
+        if (shape.equals(STRING_MAP)) return createStringMap();
+        if (shape.equals(DEEP_NESTING)) return createDeepNesting(DEPTH);
+        if (shape.equals(POJO_LIST)) return createPojoList();
+        if (shape.equals(REFERENCES)) return createReferences();
+        if (shape.equals(UTF8_STRINGS)) return createUtf8Strings();
+        throw new IllegalArgumentException("Unknown payload shape " + shape);
+    }
+
+
+    /**
+     * Creates a flat list of integers.
+     *
+     * @return The payload
+     */
+
+    private static List<Object> createIntList()
+    {
+        List<Object> list;
+        int i;
+
+        list = new ArrayList<Object>(SIZE);
+        for (i = 0; i < SIZE; i++)
+            list.add(Integer.valueOf(i * 31));
+        return list;
+    }
+
+
+    /**
+     * Creates a wide map with string keys and string values.
+     *
+     * @return The payload
+     */
+
+    private static Map<String, Object> createStringMap()
+    {
+        Map<String, Object> map;
+        int i;
+
+        map = new LinkedHashMap<String, Object>();
+        for (i = 0; i < SIZE; i++)
+            map.put("key" + i, "value number " + i);
+        return map;
+    }
+
+
+    /**
+     * Creates a tree of small maps with the specified depth. Each level has
+     * two children and a few scalar entries.
+     *
+     * @param depth
+     *            The remaining depth
+     * @return The payload
+     */
+
+    private static Map<String, Object> createDeepNesting(final int depth)
+    {
+        Map<String, Object> map;
+
+        map = new LinkedHashMap<String, Object>();
+        map.put("depth", Integer.valueOf(depth));
+        map.put("name", "node" + depth);
+        map.put("weight", Double.valueOf(depth * 1.5));
+        if (depth > 0)
+        {
+            map.put("left", createDeepNesting(depth - 1));
+            map.put("right", createDeepNesting(depth - 1));
+        }
+        return map;
+    }
+
+
+    /**
+     * Creates a list of plain Java objects.
+     *
+     * @return The payload
+     */
+
+    private static List<Object> createPojoList()
+    {
+        List<Object> list;
+        int i;
+
+        list = new ArrayList<Object>(SIZE / 10);
+        for (i = 0; i < SIZE / 10; i++)
+            list.add(new Person(i));
+        return list;
+    }
+
+
+    /**
+     * Creates a list which references a few shared maps many times so the
+     * serialized data is dominated by R: references.
+     *
+     * @return The payload
+     */
+
+    private static List<Object> createReferences()
+    {
+        List<Object> list;
+        List<Map<String, Object>> shared;
+        Map<String, Object> map;
+        int i;
+
+        shared = new ArrayList<Map<String, Object>>();
+        for (i = 0; i < 10; i++)
+        {
+            map = new LinkedHashMap<String, Object>();
+            map.put("id", Integer.valueOf(i));
+            map.put("label", "shared " + i);
+            shared.add(map);
+        }
+        list = new ArrayList<Object>(SIZE);
+        for (i = 0; i < SIZE; i++)
+            list.add(shared.get(i % shared.size()));
+        return list;
+    }
+
+
+    /**
+     * Creates a list of strings with multibyte UTF-8 characters.
+     *
+     * @return The payload
+     */
+
+    private static List<Object> createUtf8Strings()
+    {
+        List<Object> list;
+        int i;
+
+        list = new ArrayList<Object>(SIZE);
+        for (i = 0; i < SIZE; i++)
+            list.add("Grüße aus München Nr. " + i + " € 中文");
+        return list;
+    }
+}
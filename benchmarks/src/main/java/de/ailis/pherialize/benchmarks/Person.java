@@ -0,0 +1,108 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize.benchmarks;
+
+import java.io.Serializable;
+
+
+/**
+ * A plain Java object used for the POJO list payloads. It is serialized
+ * through the Serializable support of the serializer.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class Person implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 4203473164375298736L;
+
+    /** The name */
+    private String name;
+
+    /** The email address */
+    private String email;
+
+    /** The age */
+    private int age;
+
+    /** The score */
+    private double score;
+
+    /** If the person is active */
+    private boolean active;
+
+
+    /**
+     * Constructor
+     */
+
+    public Person()
+    {
+        super();
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param id
+     *            The number used to generate the field values
+     */
+
+    public Person(final int id)
+    {
+        super();
+        this.name = "Person " + id;
+        this.email = "person" + id + "@example.com";
+        this.age = 20 + id % 50;
+        this.score = id * 0.75;
+        this.active = id % 3 != 0;
+    }
+
+
+    /**
+     * Returns the name.
+     *
+     * @return The name
+     */
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+
+    /**
+     * Returns the age.
+     *
+     * @return The age
+     */
+
+    public int getAge()
+    {
+        return this.age;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ailis.pherialize.Pherialize;
+import de.ailis.pherialize.Serializer;
+
+
+/**
+ * Benchmarks serializing the payload shapes into a string and into a
+ * stream.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark
+{
+    /** The payload shape */
+    @Param({ Payloads.INT_LIST, Payloads.STRING_MAP, Payloads.DEEP_NESTING,
+        Payloads.POJO_LIST, Payloads.REFERENCES, Payloads.UTF8_STRINGS })
+    public String shape;
+
+    /** The payload to serialize */
+    private Object payload;
+
+    /** The stream discarding the serialized data */
+    private OutputStream sink;
+
+    /** The pool for serializing in parallel */
+    private ForkJoinPool pool;
+
+
+    /**
+     * Creates the payload.
+     */
+
+    @Setup
+    public void setup()
+    {
+        this.payload = Payloads.create(this.shape);
+        this.sink = new NullOutputStream();
+        this.pool = new ForkJoinPool();
+    }
+
+
+    /**
+     * Shuts down the pool.
+     */
+
+    @TearDown
+    public void tearDown()
+    {
+        this.pool.shutdown();
+    }
+
+
+    /**
+     * Serializes the payload into a string.
+     *
+     * @return The serialized data
+     */
+
+    @Benchmark
+    public String serializeString()
+    {
+        return Pherialize.serialize(this.payload);
+    }
+
+
+    /**
+     * Serializes the payload into a stream.
+     *
+     * @throws IOException
+     *             When writing fails
+     */
+
+    @Benchmark
+    public void serializeStream() throws IOException
+    {
+        new Serializer().serialize(this.payload, this.sink);
+    }
+
+
+    /**
+     * Serializes the payload into a string in parallel.
+     *
+     * @return The serialized data
+     */
+
+    @Benchmark
+    public String serializeParallel()
+    {
+        return new Serializer().serialize(this.payload, this.pool);
+    }
+
+
+    /**
+     * Output stream discarding all data.
+     */
+
+    private static final class NullOutputStream extends OutputStream
+    {
+        /**
+         * @see java.io.OutputStream#write(int)
+         */
+
+        @Override
+        public void write(final int b)
+        {
+            // Discard
+        }
+
+
+        /**
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+        {
+            // Discard
+        }
+    }
+}
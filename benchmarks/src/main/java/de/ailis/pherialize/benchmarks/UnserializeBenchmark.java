@@ -0,0 +1,137 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize.benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ailis.pherialize.ClassRegistry;
+import de.ailis.pherialize.Mixed;
+import de.ailis.pherialize.Pherialize;
+import de.ailis.pherialize.Unserializer;
+
+
+/**
+ * Benchmarks unserializing the serialized payload shapes from raw bytes.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnserializeBenchmark
+{
+    /** The payload shape */
+    @Param({ Payloads.INT_LIST, Payloads.STRING_MAP, Payloads.DEEP_NESTING,
+        Payloads.POJO_LIST, Payloads.REFERENCES, Payloads.UTF8_STRINGS })
+    public String shape;
+
+    /** The serialized payload */
+    private byte[] data;
+
+    /** The registry mapping the POJO payload back to Java objects */
+    private ClassRegistry registry;
+
+    /** The pool for unserializing in parallel */
+    private ForkJoinPool pool;
+
+
+    /**
+     * Creates and serializes the payload.
+     */
+
+    @Setup
+    public void setup()
+    {
+        this.data = Pherialize.serialize(Payloads.create(this.shape))
+            .getBytes(Charset.forName("UTF-8"));
+        this.registry = new ClassRegistry();
+        this.registry.register(Person.class);
+        this.pool = new ForkJoinPool();
+    }
+
+
+    /**
+     * Shuts down the pool.
+     */
+
+    @TearDown
+    public void tearDown()
+    {
+        this.pool.shutdown();
+    }
+
+
+    /**
+     * Unserializes the payload into a Mixed tree.
+     *
+     * @return The unserialized data
+     */
+
+    @Benchmark
+    public Mixed unserialize()
+    {
+        Unserializer unserializer;
+
+        unserializer = new Unserializer(this.data);
+        unserializer.setClassRegistry(this.registry);
+        return unserializer.unserializeObject();
+    }
+
+
+    /**
+     * Unserializes the payload into a Mixed tree in parallel.
+     *
+     * @return The unserialized data
+     */
+
+    @Benchmark
+    public Mixed unserializeParallel()
+    {
+        Unserializer unserializer;
+
+        unserializer = new Unserializer(this.data);
+        unserializer.setClassRegistry(this.registry);
+        return unserializer.unserializeObject(this.pool);
+    }
+}
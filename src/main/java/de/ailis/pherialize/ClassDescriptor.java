@@ -0,0 +1,267 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.ailis.pherialize.exceptions.UnserializeException;
+
+
+/**
+ * Precomputed serialization metadata of a class. Descriptors are created
+ * once per class and shared between all serializers and unserializers so
+ * serializing an object only needs to read the field values and
+ * unserializing an object only needs to write them.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class ClassDescriptor
+{
+    /** The cached class descriptors */
+    private static final ClassValue<ClassDescriptor> DESCRIPTORS =
+        new ClassValue<ClassDescriptor>()
+        {
+            @Override
+            protected ClassDescriptor computeValue(final Class<?> type)
+            {
+                return new ClassDescriptor(type);
+            }
+        };
+
+    /** The PHP class name */
+    private final String className;
+
+    /**
+     * The serialized object header (O:n:"Name":count:{) or null if the class
+     * name contains non-ASCII characters and must be serialized with the
+     * charset of the serializer.
+     */
+    private final String header;
+
+    /** The serialized fields */
+    private final FieldDescriptor[] fields;
+
+    /**
+     * The fields mapped by name. Fields of sub classes hide fields with the
+     * same name in super classes
+     */
+    private final Map<String, FieldDescriptor> fieldsByName;
+
+    /** The no-arg constructor. Null if class has none */
+    private final Constructor<?> constructor;
+
+    /** The described class */
+    private final Class<?> type;
+
+
+    /**
+     * Constructor
+     *
+     * @param type
+     *            The described class
+     */
+
+    private ClassDescriptor(final Class<?> type)
+    {
+        super();
+
+        List<FieldDescriptor> fields;
+        Class<?> c;
+        Constructor<?> constructor;
+
+        fields = new ArrayList<FieldDescriptor>();
+        c = type;
+        while (c != null)
+        {
+            for (final Field field: c.getDeclaredFields())
+            {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+                if (Modifier.isVolatile(field.getModifiers())) continue;
+
+                try
+                {
+                    field.setAccessible(true);
+                    fields.add(new FieldDescriptor(field));
+                }
+                catch (final RuntimeException e)
+                {
+                    // Fields which can't be made accessible (Security
+                    // manager or module system) are just ignored, so all
+                    // described fields can be read without access errors
+                }
+            }
+            c = c.getSuperclass();
+        }
+        this.fields = fields.toArray(new FieldDescriptor[fields.size()]);
+        this.fieldsByName = new HashMap<String, FieldDescriptor>();
+        for (final FieldDescriptor field: this.fields)
+        {
+            if (!this.fieldsByName.containsKey(field.getName()))
+                this.fieldsByName.put(field.getName(), field);
+        }
+
+        try
+        {
+            constructor = type.getDeclaredConstructor();
+        }
+        catch (final NoSuchMethodException e)
+        {
+            constructor = null;
+        }
+        catch (final SecurityException e)
+        {
+            constructor = null;
+        }
+        if (constructor != null)
+        {
+            try
+            {
+                constructor.setAccessible(true);
+            }
+            catch (final RuntimeException e)
+            {
+                // A constructor which can't be made accessible is still
+                // used when it is public. Otherwise newInstance() reports
+                // the access error
+            }
+        }
+        this.constructor = constructor;
+        this.type = type;
+
+        this.className = type.getSimpleName();
+        this.header = FieldDescriptor.isAscii(this.className) ? "O:"
+            + this.className.length() + ":\"" + this.className + "\":"
+            + this.fields.length + ":{" : null;
+    }
+
+
+    /**
+     * Returns the descriptor of the specified class.
+     *
+     * @param type
+     *            The class
+     * @return The class descriptor
+     */
+
+    static ClassDescriptor forClass(final Class<?> type)
+    {
+        return DESCRIPTORS.get(type);
+    }
+
+
+    /**
+     * Returns the PHP class name.
+     *
+     * @return The PHP class name
+     */
+
+    String getClassName()
+    {
+        return this.className;
+    }
+
+
+    /**
+     * Returns the serialized object header including the field count and the
+     * opening brace or null if the header must be serialized with the charset
+     * of the serializer.
+     *
+     * @return The serialized object header or null
+     */
+
+    String getHeader()
+    {
+        return this.header;
+    }
+
+
+    /**
+     * Returns the descriptors of the serialized fields.
+     *
+     * @return The field descriptors
+     */
+
+    FieldDescriptor[] getFields()
+    {
+        return this.fields;
+    }
+
+
+    /**
+     * Returns the field with the specified name.
+     *
+     * @param name
+     *            The field name
+     * @return The field or null if not found
+     */
+
+    FieldDescriptor getField(final String name)
+    {
+        return this.fieldsByName.get(name);
+    }
+
+
+    /**
+     * Creates a new instance of the described class with its no-arg
+     * constructor.
+     *
+     * @return The new instance
+     */
+
+    Object newInstance()
+    {
+        if (this.constructor == null)
+            throw new UnserializeException(this.type.getName()
+                + " has no no-arg constructor");
+        try
+        {
+            return this.constructor.newInstance();
+        }
+        catch (final InstantiationException e)
+        {
+            throw new UnserializeException("Unable to create instance of "
+                + this.type.getName(), e);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw new UnserializeException("Unable to create instance of "
+                + this.type.getName(), e);
+        }
+        catch (final InvocationTargetException e)
+        {
+            throw new UnserializeException("Unable to create instance of "
+                + this.type.getName(), e.getCause());
+        }
+    }
+}
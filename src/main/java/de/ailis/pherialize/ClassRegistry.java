@@ -0,0 +1,111 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Maps PHP class names to Java classes. The unserializer uses this registry
+ * to create Java objects for serialized PHP objects. PHP objects of
+ * unregistered classes are unserialized into a {@link MixedObject}.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class ClassRegistry
+{
+    /** The registered classes mapped by PHP class name */
+    private final Map<String, Class<?>> classes;
+
+
+    /**
+     * Constructor
+     */
+
+    public ClassRegistry()
+    {
+        super();
+        this.classes = new ConcurrentHashMap<String, Class<?>>();
+    }
+
+
+    /**
+     * Registers the specified Java class under its simple name. This is the
+     * name the serializer uses for serializing objects of this class.
+     *
+     * @param type
+     *            The Java class. It must have a no-arg constructor
+     */
+
+    public void register(final Class<?> type)
+    {
+        register(type.getSimpleName(), type);
+    }
+
+
+    /**
+     * Registers the specified Java class for the specified PHP class name.
+     *
+     * @param name
+     *            The PHP class name
+     * @param type
+     *            The Java class. It must have a no-arg constructor
+     */
+
+    public void register(final String name, final Class<?> type)
+    {
+        this.classes.put(name, type);
+    }
+
+
+    /**
+     * Removes the registration for the specified PHP class name.
+     *
+     * @param name
+     *            The PHP class name
+     */
+
+    public void unregister(final String name)
+    {
+        this.classes.remove(name);
+    }
+
+
+    /**
+     * Returns the Java class registered for the specified PHP class name.
+     *
+     * @param name
+     *            The PHP class name
+     * @return The Java class or null if not registered
+     */
+
+    public Class<?> lookup(final String name)
+    {
+        return this.classes.get(name);
+    }
+}
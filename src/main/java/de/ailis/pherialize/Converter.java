@@ -0,0 +1,523 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.ailis.pherialize.exceptions.UnserializeException;
+
+
+/**
+ * Converts unserialized values into Java types.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class Converter
+{
+    /**
+     * Hide constructor
+     */
+
+    private Converter()
+    {
+        // Empty
+    }
+
+
+    /**
+     * Converts the specified mixed value into the specified type. Primitive
+     * types are returned boxed. Null is converted to the default value of
+     * primitive types.
+     *
+     * @param value
+     *            The mixed value. May be null
+     * @param type
+     *            The target type
+     * @return The converted value
+     */
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Object convert(final Mixed value, final Class<?> type)
+    {
+        Object raw;
+
+        if (type == Mixed.class) return value;
+        if (value == null && !type.isPrimitive()) return null;
+        if (type == int.class || type == Integer.class)
+            return Integer.valueOf(value == null ? 0 : value.toInt());
+        if (type == long.class || type == Long.class)
+            return Long.valueOf(value == null ? 0 : value.toLong());
+        if (type == double.class || type == Double.class)
+            return Double.valueOf(value == null ? 0 : value.toDouble());
+        if (type == boolean.class || type == Boolean.class)
+            return Boolean.valueOf(value != null && value.toBoolean());
+        if (type == String.class) return value.toString();
+        if (type == float.class || type == Float.class)
+            return Float.valueOf(value == null ? 0 : value.toFloat());
+        if (type == short.class || type == Short.class)
+            return Short.valueOf(value == null ? 0 : value.toShort());
+        if (type == byte.class || type == Byte.class)
+            return Byte.valueOf(value == null ? 0 : value.toByte());
+        if (type == char.class || type == Character.class)
+            return Character.valueOf(value == null ? 0 : value.toChar());
+        if (type.isEnum())
+            return Enum.valueOf((Class<? extends Enum>) type, value.toString());
+
+        raw = value.getValue();
+        if (type.isInstance(raw)) return raw;
+        throw new UnserializeException("Unable to convert " + raw
+            + " to " + type.getName());
+    }
+
+
+    /**
+     * Converts the specified mixed value into the specified generic type.
+     * PHP arrays are converted into Java arrays, collections, maps and plain
+     * Java objects with their entries converted into the type arguments,
+     * like the type-directed decoding of the {@link Unserializer} does.
+     * Other values are converted with {@link #convert(Mixed, Class)}.
+     *
+     * @param value
+     *            The mixed value. May be null
+     * @param type
+     *            The generic target type
+     * @return The converted value
+     */
+
+    static Object convert(final Mixed value, final Type type)
+    {
+        Class<?> rawType;
+        MixedArray array;
+
+        rawType = getRawType(type);
+
+        // Null values in arrays are stored as mixed null values
+        if (value != null && value.getType() == Mixed.TYPE_UNKNOWN
+            && value.getValue() == null) return convert((Mixed) null, rawType);
+        if (value == null || !value.isArray()) return convert(value, rawType);
+        array = value.toArray();
+        if (rawType.isInstance(array) && !(type instanceof ParameterizedType))
+            return array;
+        if (rawType.isArray())
+            return toJavaArray(array, getComponentType(type));
+        if (Collection.class.isAssignableFrom(rawType)
+            || rawType == Iterable.class)
+            return toCollection(array, rawType, getTypeArgument(type, 0));
+        if (Map.class.isAssignableFrom(rawType))
+            return toMap(array, rawType, getTypeArgument(type, 0),
+                getTypeArgument(type, 1));
+        if (!rawType.isPrimitive() && !rawType.isEnum()
+            && !rawType.getName().startsWith("java."))
+            return toBean(array, ClassDescriptor.forClass(rawType));
+        return convert(value, rawType);
+    }
+
+
+    /**
+     * Converts the values of the specified array into a Java array.
+     *
+     * @param array
+     *            The array to convert
+     * @param componentType
+     *            The component type of the Java array
+     * @return The Java array
+     */
+
+    private static Object toJavaArray(final MixedArray array,
+        final Type componentType)
+    {
+        Object result;
+        int i;
+
+        result = Array.newInstance(getRawType(componentType), array.size());
+        i = 0;
+        for (final Object value: array.values())
+            Array.set(result, i++, convert((Mixed) value, componentType));
+        return result;
+    }
+
+
+    /**
+     * Converts the values of the specified array into a collection. The keys
+     * are ignored.
+     *
+     * @param array
+     *            The array to convert
+     * @param rawType
+     *            The raw collection type
+     * @param elementType
+     *            The element type
+     * @return The collection
+     */
+
+    private static Collection<Object> toCollection(final MixedArray array,
+        final Class<?> rawType, final Type elementType)
+    {
+        Collection<Object> collection;
+
+        collection = newCollection(rawType, array.size());
+        for (final Object value: array.values())
+            collection.add(convert((Mixed) value, elementType));
+        return collection;
+    }
+
+
+    /**
+     * Converts the entries of the specified array into a map.
+     *
+     * @param array
+     *            The array to convert
+     * @param rawType
+     *            The raw map type
+     * @param keyType
+     *            The key type
+     * @param valueType
+     *            The value type
+     * @return The map
+     */
+
+    private static Map<Object, Object> toMap(final MixedArray array,
+        final Class<?> rawType, final Type keyType, final Type valueType)
+    {
+        Map<Object, Object> map;
+
+        map = newMap(rawType, array.size());
+        for (final Map.Entry<Object, Object> entry: array.entrySet())
+            map.put(convert((Mixed) entry.getKey(), getRawType(keyType)),
+                convert((Mixed) entry.getValue(), valueType));
+        return map;
+    }
+
+
+    /**
+     * Converts the entries of the specified array or the properties of the
+     * specified PHP object into a new instance of the described class.
+     * Entries without a matching field are ignored.
+     *
+     * @param array
+     *            The array or PHP object to convert
+     * @param descriptor
+     *            The descriptor of the Java class
+     * @return The Java object
+     */
+
+    private static Object toBean(final MixedArray array,
+        final ClassDescriptor descriptor)
+    {
+        Object object;
+        FieldDescriptor field;
+
+        object = descriptor.newInstance();
+        for (final Map.Entry<Object, Object> entry: array.entrySet())
+        {
+            field = descriptor.getField(Unserializer.getPropertyName(entry
+                .getKey().toString()));
+            if (field != null) field.set(object, (Mixed) entry.getValue());
+        }
+        return object;
+    }
+
+
+    /**
+     * Creates a new collection of the specified type. Interfaces and
+     * abstract types are implemented by ArrayList, LinkedHashSet or TreeSet.
+     *
+     * @param rawType
+     *            The raw collection type
+     * @param size
+     *            The expected number of elements
+     * @return The new collection
+     */
+
+    @SuppressWarnings("unchecked")
+    static Collection<Object> newCollection(final Class<?> rawType,
+        final int size)
+    {
+        if (rawType.isAssignableFrom(ArrayList.class))
+            return new ArrayList<Object>(size);
+        if (rawType.isAssignableFrom(LinkedHashSet.class))
+            return new LinkedHashSet<Object>(size);
+        if (rawType.isAssignableFrom(TreeSet.class))
+            return new TreeSet<Object>();
+        return (Collection<Object>) newInstance(rawType);
+    }
+
+
+    /**
+     * Creates a new map of the specified type. Interfaces and abstract types
+     * are implemented by LinkedHashMap or TreeMap.
+     *
+     * @param rawType
+     *            The raw map type
+     * @param size
+     *            The expected number of entries
+     * @return The new map
+     */
+
+    @SuppressWarnings("unchecked")
+    static Map<Object, Object> newMap(final Class<?> rawType, final int size)
+    {
+        if (rawType.isAssignableFrom(LinkedHashMap.class))
+            return new LinkedHashMap<Object, Object>(size);
+        if (rawType.isAssignableFrom(TreeMap.class))
+            return new TreeMap<Object, Object>();
+        return (Map<Object, Object>) newInstance(rawType);
+    }
+
+
+    /**
+     * Returns the raw class of the specified type.
+     *
+     * @param type
+     *            The type
+     * @return The raw class
+     */
+
+    static Class<?> getRawType(final Type type)
+    {
+        Type[] bounds;
+
+        if (type instanceof Class<?>) return (Class<?>) type;
+        if (type instanceof ParameterizedType)
+            return getRawType(((ParameterizedType) type).getRawType());
+        if (type instanceof GenericArrayType)
+            return Array.newInstance(getRawType(((GenericArrayType) type)
+                .getGenericComponentType()), 0).getClass();
+        if (type instanceof WildcardType)
+            bounds = ((WildcardType) type).getUpperBounds();
+        else if (type instanceof TypeVariable<?>)
+            bounds = ((TypeVariable<?>) type).getBounds();
+        else
+            bounds = new Type[0];
+        return bounds.length == 0 ? Object.class : getRawType(bounds[0]);
+    }
+
+
+    /**
+     * Returns the component type of the specified array type.
+     *
+     * @param type
+     *            The array type
+     * @return The component type
+     */
+
+    static Type getComponentType(final Type type)
+    {
+        if (type instanceof GenericArrayType)
+            return ((GenericArrayType) type).getGenericComponentType();
+        return getRawType(type).getComponentType();
+    }
+
+
+    /**
+     * Returns the type argument with the specified index of the specified
+     * parameterized type. Object is returned if type is not parameterized.
+     *
+     * @param type
+     *            The type
+     * @param index
+     *            The index of the type argument
+     * @return The type argument
+     */
+
+    static Type getTypeArgument(final Type type, final int index)
+    {
+        Type[] arguments;
+
+        if (!(type instanceof ParameterizedType)) return Object.class;
+        arguments = ((ParameterizedType) type).getActualTypeArguments();
+        return index < arguments.length ? arguments[index] : Object.class;
+    }
+
+
+    /**
+     * Converts the specified plain Java value (String, Number, Boolean,
+     * Map, Collection, null or a Mixed) into the specified type using the
+     * same conversion rules as the Mixed class. Primitive types are returned
+     * boxed. Null is converted to the default value of primitive types.
+     *
+     * @param value
+     *            The value. May be null
+     * @param type
+     *            The target type
+     * @return The converted value
+     */
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Object convert(final Object value, final Class<?> type)
+    {
+        if (type == Object.class) return value;
+        if (value instanceof Mixed) return convert((Mixed) value, type);
+        if (value == null && !type.isPrimitive()) return null;
+        if (type.isInstance(value)) return value;
+        if (type == int.class || type == Integer.class)
+            return Integer.valueOf((int) toLong(value));
+        if (type == long.class || type == Long.class)
+            return Long.valueOf(toLong(value));
+        if (type == double.class || type == Double.class)
+            return Double.valueOf(toDouble(value));
+        if (type == boolean.class || type == Boolean.class)
+            return Boolean.valueOf(toBoolean(value));
+        if (type == String.class) return value.toString();
+        if (type == float.class || type == Float.class)
+            return Float.valueOf((float) toDouble(value));
+        if (type == short.class || type == Short.class)
+            return Short.valueOf((short) toLong(value));
+        if (type == byte.class || type == Byte.class)
+            return Byte.valueOf((byte) toLong(value));
+        if (type == char.class || type == Character.class)
+            return Character.valueOf(value == null
+                || value.toString().length() == 0 ? 0 : value.toString()
+                .charAt(0));
+        if (type.isEnum())
+            return Enum.valueOf((Class<? extends Enum>) type, value.toString());
+        if (type == Mixed.class) return new Mixed(value);
+        throw new UnserializeException("Unable to convert " + value + " to "
+            + type.getName());
+    }
+
+
+    /**
+     * Creates a new instance of the specified collection or map class with
+     * its no-arg constructor.
+     *
+     * @param type
+     *            The class
+     * @return The new instance
+     */
+
+    static Object newInstance(final Class<?> type)
+    {
+        try
+        {
+            return type.getDeclaredConstructor().newInstance();
+        }
+        catch (final NoSuchMethodException e)
+        {
+            throw new UnserializeException(type.getName()
+                + " has no no-arg constructor", e);
+        }
+        catch (final InstantiationException e)
+        {
+            throw new UnserializeException("Unable to create instance of "
+                + type.getName(), e);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw new UnserializeException("Unable to create instance of "
+                + type.getName(), e);
+        }
+        catch (final InvocationTargetException e)
+        {
+            throw new UnserializeException("Unable to create instance of "
+                + type.getName(), e.getCause());
+        }
+    }
+
+
+    /**
+     * Converts the specified plain Java value into a double.
+     *
+     * @param value
+     *            The value. May be null
+     * @return The double
+     */
+
+    private static double toDouble(final Object value)
+    {
+        if (value == null) return 0;
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof Boolean)
+            return ((Boolean) value).booleanValue() ? 1 : 0;
+        if (value instanceof Map<?, ?>)
+            return ((Map<?, ?>) value).isEmpty() ? 0 : 1;
+        if (value instanceof Collection<?>)
+            return ((Collection<?>) value).isEmpty() ? 0 : 1;
+        try
+        {
+            return Double.parseDouble(value.toString());
+        }
+        catch (final NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+
+    /**
+     * Converts the specified plain Java value into a long.
+     *
+     * @param value
+     *            The value. May be null
+     * @return The long
+     */
+
+    private static long toLong(final Object value)
+    {
+        if (value instanceof Integer || value instanceof Long
+            || value instanceof Short || value instanceof Byte)
+            return ((Number) value).longValue();
+        return (long) toDouble(value);
+    }
+
+
+    /**
+     * Converts the specified plain Java value into a boolean.
+     *
+     * @param value
+     *            The value. May be null
+     * @return The boolean
+     */
+
+    private static boolean toBoolean(final Object value)
+    {
+        if (value == null) return false;
+        if (value instanceof Boolean) return ((Boolean) value).booleanValue();
+        if (value instanceof String) return ((String) value).length() > 0;
+        if (value instanceof Number)
+            return ((Number) value).doubleValue() != 0;
+        if (value instanceof Character)
+            return ((Character) value).charValue() != 0;
+        if (value instanceof Map<?, ?>) return !((Map<?, ?>) value).isEmpty();
+        if (value instanceof Collection<?>)
+            return !((Collection<?>) value).isEmpty();
+        return false;
+    }
+}
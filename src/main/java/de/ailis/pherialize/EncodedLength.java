@@ -0,0 +1,175 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Calculates the number of bytes of strings encoded in a specific charset
+ * without encoding them. UTF-8 and single-byte charsets are calculated by
+ * scanning the characters. Strings which only contain ASCII characters are
+ * detected first. All other charsets fall back to encoding the string.
+ *
+ * Unpaired surrogates are counted as one byte because the Java encoders
+ * replace them with a question mark.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class EncodedLength
+{
+    /** The charset */
+    private final Charset charset;
+
+    /** If the charset is UTF-8 */
+    private final boolean utf8;
+
+    /** If the charset encodes every character into a single byte */
+    private final boolean singleByte;
+
+
+    /**
+     * Constructor
+     *
+     * @param charset
+     *            The charset
+     */
+
+    EncodedLength(final Charset charset)
+    {
+        super();
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.singleByte = !this.utf8 && charset.canEncode()
+            && charset.newEncoder().maxBytesPerChar() == 1;
+    }
+
+
+    /**
+     * Checks if the charset is UTF-8.
+     *
+     * @return True if UTF-8, false if not
+     */
+
+    boolean isUtf8()
+    {
+        return this.utf8;
+    }
+
+
+    /**
+     * Returns the number of bytes of the specified string encoded in the
+     * charset.
+     *
+     * @param string
+     *            The string
+     * @return The number of bytes
+     */
+
+    int of(final String string)
+    {
+        if (this.utf8) return utf8(string);
+        if (this.singleByte) return singleByte(string);
+        return string.getBytes(this.charset).length;
+    }
+
+
+    /**
+     * Returns the number of bytes of the specified string encoded in UTF-8.
+     *
+     * @param string
+     *            The string
+     * @return The number of bytes
+     */
+
+    static int utf8(final String string)
+    {
+        int i, max;
+        int length;
+        char c;
+
+        max = string.length();
+
+        // Short-circuit for ASCII strings
+        i = 0;
+        while (i < max && string.charAt(i) < 0x80)
+            i++;
+        if (i == max) return max;
+
+        length = i;
+        while (i < max)
+        {
+            c = string.charAt(i++);
+            if (c < 0x80)
+                length++;
+            else if (c < 0x800)
+                length += 2;
+            else if (Character.isHighSurrogate(c) && i < max
+                && Character.isLowSurrogate(string.charAt(i)))
+            {
+                length += 4;
+                i++;
+            }
+            else if (Character.isSurrogate(c))
+                length++;
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+
+    /**
+     * Returns the number of bytes of the specified string encoded in a
+     * single-byte charset. Each character takes one byte except surrogate
+     * pairs which are replaced by a single question mark.
+     *
+     * @param string
+     *            The string
+     * @return The number of bytes
+     */
+
+    static int singleByte(final String string)
+    {
+        int i, max;
+        int length;
+
+        max = string.length();
+        length = max;
+        for (i = 0; i < max - 1; i++)
+        {
+            if (Character.isHighSurrogate(string.charAt(i))
+                && Character.isLowSurrogate(string.charAt(i + 1)))
+            {
+                length--;
+                i++;
+            }
+        }
+        return length;
+    }
+}
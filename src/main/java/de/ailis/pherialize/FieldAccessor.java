@@ -0,0 +1,128 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.reflect.Field;
+
+
+/**
+ * Strategy for reading field values while serializing Serializable objects
+ * and writing them while unserializing PHP objects. Primitive fields are
+ * read with the typed getters so they don't need to be boxed.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+abstract class FieldAccessor
+{
+    /**
+     * Creates the accessor for the specified accessible field. Method handles
+     * are used when possible and reflection otherwise.
+     *
+     * @param field
+     *            The accessible field
+     * @return The field accessor
+     */
+
+    static FieldAccessor create(final Field field)
+    {
+        try
+        {
+            return new MethodHandleFieldAccessor(field);
+        }
+        catch (final IllegalAccessException e)
+        {
+            return new ReflectionFieldAccessor(field);
+        }
+    }
+
+
+    /**
+     * Returns the value of a reference field.
+     *
+     * @param object
+     *            The object to read the field from
+     * @return The field value
+     */
+
+    abstract Object get(Object object);
+
+
+    /**
+     * Returns the value of an int, short or byte field.
+     *
+     * @param object
+     *            The object to read the field from
+     * @return The field value
+     */
+
+    abstract int getInt(Object object);
+
+
+    /**
+     * Returns the value of a long field.
+     *
+     * @param object
+     *            The object to read the field from
+     * @return The field value
+     */
+
+    abstract long getLong(Object object);
+
+
+    /**
+     * Returns the value of a double or float field.
+     *
+     * @param object
+     *            The object to read the field from
+     * @return The field value
+     */
+
+    abstract double getDouble(Object object);
+
+
+    /**
+     * Returns the value of a boolean field.
+     *
+     * @param object
+     *            The object to read the field from
+     * @return The field value
+     */
+
+    abstract boolean getBoolean(Object object);
+
+
+    /**
+     * Sets the value of the field. Primitive fields are unboxed.
+     *
+     * @param object
+     *            The object to write the field to
+     * @param value
+     *            The field value. Must not be null for primitive fields
+     */
+
+    abstract void set(Object object, Object value);
+}
@@ -0,0 +1,221 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+
+/**
+ * Precomputed description of a field which is serialized when serializing
+ * a Serializable object or populated when unserializing a PHP object.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class FieldDescriptor
+{
+    /** The accessor used to read the field value */
+    private final FieldAccessor accessor;
+
+    /**
+     * The Mixed type constant of primitive fields or Mixed.TYPE_UNKNOWN for
+     * fields which are serialized as objects
+     */
+    private final int type;
+
+    /** The field type */
+    private final Class<?> fieldType;
+
+    /** The generic field type */
+    private final Type genericType;
+
+    /** The field name */
+    private final String name;
+
+    /**
+     * The serialized field name (s:n:"name";) or null if the name contains
+     * non-ASCII characters and must be serialized with the charset of the
+     * serializer.
+     */
+    private final String key;
+
+
+    /**
+     * Constructor
+     *
+     * @param field
+     *            The accessible field
+     */
+
+    FieldDescriptor(final Field field)
+    {
+        super();
+        this.accessor = FieldAccessor.create(field);
+        this.fieldType = field.getType();
+        this.genericType = field.getGenericType();
+        this.type = getPrimitiveType(this.fieldType);
+        this.name = field.getName();
+        this.key = isAscii(this.name) ? "s:" + this.name.length() + ":\""
+            + this.name + "\";" : null;
+    }
+
+
+    /**
+     * Returns the Mixed type constant of the specified primitive type.
+     *
+     * @param type
+     *            The field type
+     * @return The Mixed type constant or Mixed.TYPE_UNKNOWN if type is not
+     *         primitive
+     */
+
+    private static int getPrimitiveType(final Class<?> type)
+    {
+        if (type == int.class) return Mixed.TYPE_INT;
+        if (type == long.class) return Mixed.TYPE_LONG;
+        if (type == boolean.class) return Mixed.TYPE_BOOLEAN;
+        if (type == double.class) return Mixed.TYPE_DOUBLE;
+        if (type == float.class) return Mixed.TYPE_FLOAT;
+        if (type == short.class) return Mixed.TYPE_SHORT;
+        if (type == byte.class) return Mixed.TYPE_BYTE;
+        return Mixed.TYPE_UNKNOWN;
+    }
+
+
+    /**
+     * Checks if the specified text only contains ASCII characters.
+     *
+     * @param text
+     *            The text to check
+     * @return If text only contains ASCII characters
+     */
+
+    static boolean isAscii(final String text)
+    {
+        int i, max;
+
+        for (i = 0, max = text.length(); i < max; i++)
+        {
+            if (text.charAt(i) > 127) return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the field name.
+     *
+     * @return The field name
+     */
+
+    String getName()
+    {
+        return this.name;
+    }
+
+
+    /**
+     * Returns the serialized field name or null if the name must be
+     * serialized with the charset of the serializer.
+     *
+     * @return The serialized field name or null
+     */
+
+    String getKey()
+    {
+        return this.key;
+    }
+
+
+    /**
+     * Returns the Mixed type constant of a primitive field or
+     * Mixed.TYPE_UNKNOWN for reference fields.
+     *
+     * @return The type
+     */
+
+    int getType()
+    {
+        return this.type;
+    }
+
+
+    /**
+     * Returns the accessor for reading the field value.
+     *
+     * @return The field accessor
+     */
+
+    FieldAccessor getAccessor()
+    {
+        return this.accessor;
+    }
+
+
+    /**
+     * Sets the field of the specified object to the specified unserialized
+     * value. The value is converted to the generic field type.
+     *
+     * @param object
+     *            The object
+     * @param value
+     *            The unserialized value
+     */
+
+    void set(final Object object, final Mixed value)
+    {
+        this.accessor.set(object, Converter.convert(value, this.genericType));
+    }
+
+
+    /**
+     * Returns the generic type of the field.
+     *
+     * @return The generic field type
+     */
+
+    Type getGenericType()
+    {
+        return this.genericType;
+    }
+
+
+    /**
+     * Sets the field of the specified object to the specified value which
+     * must already have the field type. Primitive fields are unboxed.
+     *
+     * @param object
+     *            The object
+     * @param value
+     *            The value
+     */
+
+    void setValue(final Object object, final Object value)
+    {
+        this.accessor.set(object, value);
+    }
+}
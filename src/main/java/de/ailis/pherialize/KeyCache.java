@@ -0,0 +1,249 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.nio.charset.Charset;
+
+
+/**
+ * Bounded cache for decoded array keys and property names. The unserializer
+ * looks up short string keys by their raw bytes before decoding them, so
+ * repeated keys like "id" or "name" are returned as the same Mixed instance
+ * without building a new String. The cache is direct-mapped: A new key
+ * replaces the key which was cached in the same slot before.
+ *
+ * A key cache can be shared by multiple unserializers to profit from keys
+ * repeating over many payloads, but it is not thread-safe, so it must not
+ * be used by multiple threads at the same time.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class KeyCache
+{
+    /** The default number of cached keys */
+    private static final int DEFAULT_SIZE = 1024;
+
+    /** The default maximum length of cached keys in bytes */
+    private static final int DEFAULT_MAX_KEY_LENGTH = 32;
+
+    /** The maximum length of cached keys in bytes */
+    private final int maxKeyLength;
+
+    /** The raw bytes of the cached keys */
+    private final byte[][] keys;
+
+    /** The charsets the cached keys were decoded with */
+    private final Charset[] charsets;
+
+    /** The cached decoded keys */
+    private final Mixed[] values;
+
+    /** The number of cache hits */
+    private long hits;
+
+    /** The number of cache misses */
+    private long misses;
+
+
+    /**
+     * Constructor
+     */
+
+    public KeyCache()
+    {
+        this(DEFAULT_SIZE, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param size
+     *            The maximum number of cached keys. Rounded up to the next
+     *            power of two
+     */
+
+    public KeyCache(final int size)
+    {
+        this(size, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param size
+     *            The maximum number of cached keys. Rounded up to the next
+     *            power of two
+     * @param maxKeyLength
+     *            The maximum length of cached keys in bytes. Longer keys
+     *            are not cached
+     */
+
+    public KeyCache(final int size, final int maxKeyLength)
+    {
+        int capacity;
+
+        if (size < 1 || size > 1 << 30)
+            throw new IllegalArgumentException("Illegal size: " + size);
+        if (maxKeyLength < 0)
+            throw new IllegalArgumentException("Illegal max key length: "
+                + maxKeyLength);
+        capacity = Integer.highestOneBit(size);
+        if (capacity < size) capacity <<= 1;
+        this.maxKeyLength = maxKeyLength;
+        this.keys = new byte[capacity][];
+        this.charsets = new Charset[capacity];
+        this.values = new Mixed[capacity];
+    }
+
+
+    /**
+     * Returns the maximum number of cached keys.
+     *
+     * @return The maximum number of cached keys
+     */
+
+    public int getSize()
+    {
+        return this.values.length;
+    }
+
+
+    /**
+     * Returns the maximum length of cached keys in bytes.
+     *
+     * @return The maximum key length
+     */
+
+    public int getMaxKeyLength()
+    {
+        return this.maxKeyLength;
+    }
+
+
+    /**
+     * Returns the number of lookups which returned a cached key.
+     *
+     * @return The number of cache hits
+     */
+
+    public long getHits()
+    {
+        return this.hits;
+    }
+
+
+    /**
+     * Returns the number of lookups which had to decode the key.
+     *
+     * @return The number of cache misses
+     */
+
+    public long getMisses()
+    {
+        return this.misses;
+    }
+
+
+    /**
+     * Removes all cached keys and resets the hit and miss counters.
+     */
+
+    public void clear()
+    {
+        int i;
+
+        for (i = 0; i < this.values.length; i++)
+        {
+            this.keys[i] = null;
+            this.charsets[i] = null;
+            this.values[i] = null;
+        }
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+
+    /**
+     * Returns the decoded key for the specified raw bytes. The key is taken
+     * from the cache if present and decoded and cached otherwise. Keys
+     * longer than the maximum key length are decoded without using the
+     * cache.
+     *
+     * @param data
+     *            The data buffer
+     * @param off
+     *            The offset of the raw key in the buffer
+     * @param len
+     *            The length of the raw key in bytes
+     * @param charset
+     *            The charset of the raw key
+     * @return The decoded key
+     */
+
+    Mixed lookup(final byte[] data, final int off, final int len,
+        final Charset charset)
+    {
+        byte[] key;
+        Mixed value;
+        int hash, slot, i;
+
+        if (len > this.maxKeyLength)
+            return new Mixed(new String(data, off, len, charset));
+
+        // FNV-1a
+        hash = 0x811C9DC5;
+        for (i = 0; i < len; i++)
+            hash = (hash ^ data[off + i]) * 0x01000193;
+        slot = (hash ^ (hash >>> 16)) & (this.values.length - 1);
+
+        key = this.keys[slot];
+        if (key != null && key.length == len
+            && charset.equals(this.charsets[slot]))
+        {
+            for (i = 0; i < len; i++)
+            {
+                if (key[i] != data[off + i]) break;
+            }
+            if (i == len)
+            {
+                this.hits++;
+                return this.values[slot];
+            }
+        }
+
+        this.misses++;
+        key = new byte[len];
+        System.arraycopy(data, off, key, 0, len);
+        value = new Mixed(new String(key, charset));
+        this.keys[slot] = key;
+        this.charsets[slot] = charset;
+        this.values[slot] = value;
+        return value;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A mixed array which is decoded from the serialized data on first access.
+ * Created by the unserializer in lazy mode. Nested arrays are again lazy
+ * arrays, so only the arrays which are actually accessed are decoded.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class LazyMixedArray extends MixedArray
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 2868153493406278735L;
+
+    /** The unserializer to decode the array with. Null when decoded */
+    private transient Unserializer source;
+
+    /** The scanned document the array belongs to */
+    private transient Unserializer.LazyDocument document;
+
+    /** The reference slot of the array in the document */
+    private final int slot;
+
+
+    /**
+     * Constructor
+     *
+     * @param source
+     *            The unserializer to decode the array with
+     * @param document
+     *            The scanned document the array belongs to
+     * @param slot
+     *            The reference slot of the array in the document
+     */
+
+    LazyMixedArray(final Unserializer source,
+        final Unserializer.LazyDocument document, final int slot)
+    {
+        super();
+        this.source = source;
+        this.document = document;
+        this.slot = slot;
+    }
+
+
+    /**
+     * Decodes the array entries if not already done.
+     */
+
+    private void load()
+    {
+        Unserializer source;
+
+        source = this.source;
+        if (source == null) return;
+        this.source = null;
+        source.loadLazyArray(this, this.document, this.slot);
+        this.document = null;
+    }
+
+
+    /**
+     * Checks if the array entries have been decoded.
+     *
+     * @return True if decoded, false if not
+     */
+
+    boolean isLoaded()
+    {
+        return this.source == null;
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#size()
+     */
+
+    @Override
+    public int size()
+    {
+        load();
+        return super.size();
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#get(java.lang.Object)
+     */
+
+    @Override
+    public Object get(final Object key)
+    {
+        load();
+        return super.get(key);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#get(int)
+     */
+
+    @Override
+    public Object get(final int index)
+    {
+        load();
+        return super.get(index);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#put(java.lang.Object,
+     *      java.lang.Object)
+     */
+
+    @Override
+    public Object put(final Object key, final Object value)
+    {
+        load();
+        return super.put(key, value);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#containsKey(java.lang.Object)
+     */
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        load();
+        return super.containsKey(key);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#containsValue(java.lang.Object)
+     */
+
+    @Override
+    public boolean containsValue(final Object value)
+    {
+        load();
+        return super.containsValue(value);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#remove(java.lang.Object)
+     */
+
+    @Override
+    public Object remove(final Object key)
+    {
+        load();
+        return super.remove(key);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#clear()
+     */
+
+    @Override
+    public void clear()
+    {
+        this.source = null;
+        this.document = null;
+        super.clear();
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#entrySet()
+     */
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet()
+    {
+        load();
+        return super.entrySet();
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#isPacked()
+     */
+
+    @Override
+    public boolean isPacked()
+    {
+        load();
+        return super.isPacked();
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.MixedArray#clone()
+     */
+
+    @Override
+    public Object clone()
+    {
+        load();
+        return super.clone();
+    }
+
+
+    /**
+     * Replaces the lazy array with a plain mixed array when it is serialized.
+     *
+     * @return The plain mixed array
+     */
+
+    private Object writeReplace()
+    {
+        load();
+        return new MixedArray(this);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import de.ailis.pherialize.exceptions.SerializeException;
+import de.ailis.pherialize.exceptions.UnserializeException;
+
+
+/**
+ * Field accessor using a method handle. The getter handle is adapted to the
+ * generic (Object) signature with the primitive return type of the field so
+ * primitive values are not boxed. Only char values are boxed because they
+ * are serialized as Character objects. Fields which can't be written with a
+ * method handle (Like final fields on some Java versions) are written with
+ * reflection.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class MethodHandleFieldAccessor extends FieldAccessor
+{
+    /** The adapted getter */
+    private final MethodHandle getter;
+
+    /** The adapted setter. Null if field must be written with reflection */
+    private final MethodHandle setter;
+
+    /** The accessible field */
+    private final Field field;
+
+    /** The field name. Only used for error messages */
+    private final String name;
+
+
+    /**
+     * Constructor
+     *
+     * @param field
+     *            The accessible field
+     * @throws IllegalAccessException
+     *             When no getter handle can be created for the field
+     */
+
+    MethodHandleFieldAccessor(final Field field) throws IllegalAccessException
+    {
+        super();
+
+        Class<?> type;
+        Class<?> returnType;
+        MethodHandle setter;
+
+        type = field.getType();
+        if (type == byte.class || type == short.class)
+            returnType = int.class;
+        else if (type == float.class)
+            returnType = double.class;
+        else if (type.isPrimitive() && type != char.class)
+            returnType = type;
+        else
+            returnType = Object.class;
+        this.getter = MethodHandles.lookup().unreflectGetter(field).asType(
+            MethodType.methodType(returnType, Object.class));
+        try
+        {
+            setter = MethodHandles.lookup().unreflectSetter(field).asType(
+                MethodType.methodType(void.class, Object.class, Object.class));
+        }
+        catch (final IllegalAccessException e)
+        {
+            setter = null;
+        }
+        this.setter = setter;
+        this.field = field;
+        this.name = field.getDeclaringClass().getName() + "." + field.getName();
+    }
+
+
+    /**
+     * Converts the specified throwable thrown by the getter into an
+     * unchecked exception. Errors are rethrown directly.
+     *
+     * @param e
+     *            The throwable thrown by the getter
+     * @return The unchecked exception to throw
+     */
+
+    private RuntimeException error(final Throwable e)
+    {
+        if (e instanceof Error) throw (Error) e;
+        if (e instanceof RuntimeException) return (RuntimeException) e;
+        return new SerializeException("Unable to read field " + this.name, e);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#get(java.lang.Object)
+     */
+
+    @Override
+    Object get(final Object object)
+    {
+        try
+        {
+            return (Object) this.getter.invokeExact(object);
+        }
+        catch (final Throwable e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getInt(java.lang.Object)
+     */
+
+    @Override
+    int getInt(final Object object)
+    {
+        try
+        {
+            return (int) this.getter.invokeExact(object);
+        }
+        catch (final Throwable e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getLong(java.lang.Object)
+     */
+
+    @Override
+    long getLong(final Object object)
+    {
+        try
+        {
+            return (long) this.getter.invokeExact(object);
+        }
+        catch (final Throwable e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getDouble(java.lang.Object)
+     */
+
+    @Override
+    double getDouble(final Object object)
+    {
+        try
+        {
+            return (double) this.getter.invokeExact(object);
+        }
+        catch (final Throwable e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getBoolean(java.lang.Object)
+     */
+
+    @Override
+    boolean getBoolean(final Object object)
+    {
+        try
+        {
+            return (boolean) this.getter.invokeExact(object);
+        }
+        catch (final Throwable e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#set(java.lang.Object,
+     *      java.lang.Object)
+     */
+
+    @Override
+    void set(final Object object, final Object value)
+    {
+        try
+        {
+            if (this.setter != null)
+                this.setter.invokeExact(object, value);
+            else
+                this.field.set(object, value);
+        }
+        catch (final Throwable e)
+        {
+            if (e instanceof Error) throw (Error) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new UnserializeException("Unable to write field "
+                + this.name, e);
+        }
+    }
+}
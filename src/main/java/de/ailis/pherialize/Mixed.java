@@ -76,12 +76,46 @@ public class Mixed implements Serializable, Comparable<Object>
     /** Constant for type "array" */
     public static final int TYPE_ARRAY = 9;
 
-    /** The value */
-    private Object value;
+    /** The value. Null for primitive types which are stored in bits */
+    private final Object value;
+
+    /**
+     * The primitive value. This is the integer value for integer types, the
+     * character code for characters, 0 or 1 for booleans and the raw long
+     * bits of the double value for floats and doubles.
+     */
+    private final long bits;
 
     /** The data type */
     private final int type;
 
+    /** The lowest cached integer value */
+    private static final int CACHE_LOW = -128;
+
+    /** The highest cached integer value */
+    private static final int CACHE_HIGH = 1023;
+
+    /** The cached integer values */
+    private static final Mixed[] INT_CACHE;
+
+    /** The cached boolean true value */
+    private static final Mixed TRUE = new Mixed(true);
+
+    /** The cached boolean false value */
+    private static final Mixed FALSE = new Mixed(false);
+
+    /** The cached null value */
+    private static final Mixed NULL = new Mixed((Object) null);
+
+    static
+    {
+        int i;
+
+        INT_CACHE = new Mixed[CACHE_HIGH - CACHE_LOW + 1];
+        for (i = 0; i < INT_CACHE.length; i++)
+            INT_CACHE[i] = new Mixed(i + CACHE_LOW);
+    }
+
 
     /**
      * Constructor
@@ -98,6 +132,7 @@ public class Mixed implements Serializable, Comparable<Object>
         {
             case TYPE_STRING:
                 this.value = value.toString();
+                this.bits = 0;
                 break;
 
             case TYPE_ARRAY:
@@ -113,10 +148,37 @@ public class Mixed implements Serializable, Comparable<Object>
                 {
                     this.value = new MixedArray((Map<?, ?>) value);
                 }
+                this.bits = 0;
+                break;
+
+            case TYPE_CHAR:
+                this.value = null;
+                this.bits = ((Character) value).charValue();
+                break;
+
+            case TYPE_BOOLEAN:
+                this.value = null;
+                this.bits = ((Boolean) value).booleanValue() ? 1 : 0;
+                break;
+
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                this.value = null;
+                this.bits = Double.doubleToRawLongBits(((Number) value)
+                    .doubleValue());
+                break;
+
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+                this.value = null;
+                this.bits = ((Number) value).longValue();
                 break;
 
             default:
                 this.value = value;
+                this.bits = 0;
         }
     }
 
@@ -131,7 +193,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final char value)
     {
         super();
-        this.value = Character.valueOf(value);
+        this.value = null;
+        this.bits = value;
         this.type = TYPE_CHAR;
     }
 
@@ -146,7 +209,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final byte value)
     {
         super();
-        this.value = Byte.valueOf(value);
+        this.value = null;
+        this.bits = value;
         this.type = TYPE_BYTE;
     }
 
@@ -161,7 +225,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final short value)
     {
         super();
-        this.value = Short.valueOf(value);
+        this.value = null;
+        this.bits = value;
         this.type = TYPE_SHORT;
     }
 
@@ -176,7 +241,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final int value)
     {
         super();
-        this.value = Integer.valueOf(value);
+        this.value = null;
+        this.bits = value;
         this.type = TYPE_INT;
     }
 
@@ -191,7 +257,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final long value)
     {
         super();
-        this.value = Long.valueOf(value);
+        this.value = null;
+        this.bits = value;
         this.type = TYPE_LONG;
     }
 
@@ -206,7 +273,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final float value)
     {
         super();
-        this.value = Float.valueOf(value);
+        this.value = null;
+        this.bits = Double.doubleToRawLongBits(value);
         this.type = TYPE_FLOAT;
     }
 
@@ -221,7 +289,8 @@ public class Mixed implements Serializable, Comparable<Object>
     public Mixed(final double value)
     {
         super();
-        this.value = Double.valueOf(value);
+        this.value = null;
+        this.bits = Double.doubleToRawLongBits(value);
         this.type = TYPE_DOUBLE;
     }
 
@@ -235,11 +304,65 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public Mixed(final boolean value)
     {
-        this.value = Boolean.valueOf(value);
+        this.value = null;
+        this.bits = value ? 1 : 0;
         this.type = TYPE_BOOLEAN;
     }
 
 
+    /**
+     * Returns a mixed value for the specified integer. Values between -128
+     * and 1023 are returned from a cache of shared instances.
+     *
+     * @param value
+     *            The integer value
+     * @return The mixed value
+     */
+
+    public static Mixed valueOf(final int value)
+    {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH)
+            return INT_CACHE[value - CACHE_LOW];
+        return new Mixed(value);
+    }
+
+
+    /**
+     * Returns the shared mixed value for the specified boolean.
+     *
+     * @param value
+     *            The boolean value
+     * @return The mixed value
+     */
+
+    public static Mixed valueOf(final boolean value)
+    {
+        return value ? TRUE : FALSE;
+    }
+
+
+    /**
+     * Returns a mixed value for the specified object. Null, booleans and
+     * small integers are returned from a cache of shared instances. Mixed
+     * values are returned as they are.
+     *
+     * @param value
+     *            The value. May be null
+     * @return The mixed value
+     */
+
+    public static Mixed valueOf(final Object value)
+    {
+        if (value == null) return NULL;
+        if (value instanceof Mixed) return (Mixed) value;
+        if (value instanceof Integer)
+            return valueOf(((Integer) value).intValue());
+        if (value instanceof Boolean)
+            return valueOf(((Boolean) value).booleanValue());
+        return new Mixed(value);
+    }
+
+
     /**
      * Returns the type of the specified object
      * 
@@ -305,32 +428,222 @@ public class Mixed implements Serializable, Comparable<Object>
 
 
     /**
+     * Returns the hash code of this mixed value. Mixed values which are equal
+     * produce the same hash code as their string representation, so the
+     * integer 5 and the string "5" share the same hash. Integral values are
+     * hashed from their digits without formatting them into a string.
+     *
      * @see java.lang.Object#hashCode()
      */
 
     @Override
     public int hashCode()
     {
-        return toString().hashCode();
+        if (isNull()) return 0;
+        switch (this.type)
+        {
+            case TYPE_STRING:
+            case TYPE_ARRAY:
+                return this.value.hashCode();
+
+            case TYPE_INT:
+            case TYPE_LONG:
+            case TYPE_SHORT:
+            case TYPE_BYTE:
+                return hashDecimal(this.bits);
+
+            case TYPE_CHAR:
+                return (int) this.bits;
+
+            default:
+                return toString().hashCode();
+        }
     }
 
 
     /**
+     * Checks if this mixed value is equal to the specified object. Values are
+     * compared by their string representation like PHP compares array keys,
+     * so the integer 5 is equal to the string "5". Integral values and
+     * strings are compared without formatting the integers and arrays are
+     * only equal to other arrays with equal entries.
+     *
      * @see java.lang.Object#equals(java.lang.Object)
      */
 
     @Override
     public boolean equals(final Object other)
     {
+        Mixed mixed;
+
+        if (other == this) return true;
         if (other == null) return false;
-        if (other instanceof Mixed)
+        if (!(other instanceof Mixed)) return equals(valueOf(other));
+
+        mixed = (Mixed) other;
+        if (isNull() || mixed.isNull()) return isNull() && mixed.isNull();
+        if (isIntegral(this.type))
         {
-            return toString().equals(other.toString());
+            if (isIntegral(mixed.type)) return this.bits == mixed.bits;
+            if (mixed.type == TYPE_STRING)
+                return isDecimal(this.bits, (String) mixed.value);
         }
-        else
+        else if (this.type == TYPE_STRING)
+        {
+            if (mixed.type == TYPE_STRING) return this.value.equals(mixed.value);
+            if (isIntegral(mixed.type))
+                return isDecimal(mixed.bits, (String) this.value);
+        }
+        if (this.type == TYPE_ARRAY || mixed.type == TYPE_ARRAY)
+            return this.type == mixed.type && this.value.equals(mixed.value);
+        return toString().equals(mixed.toString());
+    }
+
+
+    /**
+     * Checks if this mixed value represents null.
+     *
+     * @return True if null, false if not
+     */
+
+    private boolean isNull()
+    {
+        return this.value == null && !isPrimitive(this.type);
+    }
+
+
+    /**
+     * Checks if the specified type is stored as a primitive value.
+     *
+     * @param type
+     *            The type (One of the TYPE_* constants)
+     * @return True if primitive type, false if not
+     */
+
+    private static boolean isPrimitive(final int type)
+    {
+        return type >= TYPE_CHAR && type <= TYPE_BOOLEAN;
+    }
+
+
+    /**
+     * Returns the primitive floating point value.
+     *
+     * @return The double value
+     */
+
+    private double doubleBits()
+    {
+        return Double.longBitsToDouble(this.bits);
+    }
+
+
+    /**
+     * Replaces mixed values which were serialized with boxed primitive
+     * values by a primitive-backed mixed value.
+     *
+     * @return The resolved mixed value
+     */
+
+    private Object readResolve()
+    {
+        if (this.value != null && isPrimitive(this.type))
+            return new Mixed(this.value);
+        return this;
+    }
+
+
+    /**
+     * Checks if this mixed value is an integral number (byte, short, int or
+     * long).
+     *
+     * @return True if integral number, false if not
+     */
+
+    boolean isIntegral()
+    {
+        return isIntegral(this.type);
+    }
+
+
+    /**
+     * Checks if the specified type is an integral number type.
+     *
+     * @param type
+     *            The type (One of the TYPE_* constants)
+     * @return True if integral number type, false if not
+     */
+
+    private static boolean isIntegral(final int type)
+    {
+        return type == TYPE_INT || type == TYPE_LONG || type == TYPE_SHORT
+            || type == TYPE_BYTE;
+    }
+
+
+    /**
+     * Returns the same hash code as the string hash code of the decimal
+     * representation of the specified value.
+     *
+     * @param value
+     *            The value
+     * @return The hash code
+     */
+
+    private static int hashDecimal(final long value)
+    {
+        long rest;
+        int hash, factor, digit;
+
+        hash = 0;
+        factor = 1;
+        rest = value;
+        do
         {
-            return toString().equals(other.toString());
+            digit = (int) (rest % 10);
+            hash += ('0' + (digit < 0 ? -digit : digit)) * factor;
+            factor *= 31;
+            rest /= 10;
         }
+        while (rest != 0);
+        if (value < 0) hash += '-' * factor;
+        return hash;
+    }
+
+
+    /**
+     * Checks if the specified string is exactly the decimal representation of
+     * the specified value.
+     *
+     * @param value
+     *            The value
+     * @param string
+     *            The string
+     * @return True if string represents the value, false if not
+     */
+
+    private static boolean isDecimal(final long value, final String string)
+    {
+        long rest;
+        int digit, i;
+
+        i = string.length() - 1;
+        rest = value;
+        do
+        {
+            digit = (int) (rest % 10);
+            if (i < 0 || string.charAt(i) != '0' + (digit < 0 ? -digit : digit))
+                return false;
+            i--;
+            rest /= 10;
+        }
+        while (rest != 0);
+        if (value < 0)
+        {
+            if (i < 0 || string.charAt(i) != '-') return false;
+            i--;
+        }
+        return i < 0;
     }
 
 
@@ -341,8 +654,30 @@ public class Mixed implements Serializable, Comparable<Object>
     @Override
     public String toString()
     {
-        if (this.value == null) return null;
-        return this.value.toString();
+        switch (this.type)
+        {
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+                return Long.toString(this.bits);
+
+            case TYPE_DOUBLE:
+                return Double.toString(doubleBits());
+
+            case TYPE_FLOAT:
+                return Float.toString((float) doubleBits());
+
+            case TYPE_BOOLEAN:
+                return this.bits != 0 ? "true" : "false";
+
+            case TYPE_CHAR:
+                return String.valueOf((char) this.bits);
+
+            default:
+                if (this.value == null) return null;
+                return this.value.toString();
+        }
     }
 
 
@@ -357,7 +692,7 @@ public class Mixed implements Serializable, Comparable<Object>
     public Object toType(final int type)
     {
         // Return the value right away if it's already the correct type
-        if (this.type == type) return this.value;
+        if (this.type == type) return getValue();
 
         switch (type)
         {
@@ -382,7 +717,7 @@ public class Mixed implements Serializable, Comparable<Object>
             case TYPE_STRING:
                 return toString();
             default:
-                return this.value;
+                return getValue();
         }
     }
 
@@ -397,7 +732,8 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public char toChar()
     {
-        if (this.value == null) return 0;
+        if (this.type == TYPE_CHAR) return (char) this.bits;
+        if (isNull()) return 0;
         if (isArray())
             return (char) (((MixedArray) this.value).size() == 0 ? 0 : 1);
         if (toString().length() > 0)
@@ -418,18 +754,7 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public short toShort()
     {
-        if (this.value == null) return 0;
-        if (isBoolean()) return toBoolean() ? (short) 1 : (short) 0;
-        if (isArray())
-            return (short) (((MixedArray) this.value).size() == 0 ? 0 : 1);
-        try
-        {
-            return (short) toLong();
-        }
-        catch (final NumberFormatException e)
-        {
-            return 0;
-        }
+        return (short) toLong();
     }
 
 
@@ -443,18 +768,7 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public byte toByte()
     {
-        if (this.value == null) return 0;
-        if (isBoolean()) return toBoolean() ? (byte) 1 : (byte) 0;
-        if (isArray())
-            return (byte) (((MixedArray) this.value).size() == 0 ? 0 : 1);
-        try
-        {
-            return (byte) toLong();
-        }
-        catch (final NumberFormatException e)
-        {
-            return 0;
-        }
+        return (byte) toLong();
     }
 
 
@@ -468,17 +782,7 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public int toInt()
     {
-        if (this.value == null) return 0;
-        if (isBoolean()) return toBoolean() ? 1 : 0;
-        if (isArray()) return ((MixedArray) this.value).size() == 0 ? 0 : 1;
-        try
-        {
-            return (int) toLong();
-        }
-        catch (final NumberFormatException e)
-        {
-            return 0;
-        }
+        return (int) toLong();
     }
 
 
@@ -492,16 +796,21 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public long toLong()
     {
-        if (this.value == null) return 0;
-        if (isBoolean()) return toBoolean() ? 1 : 0;
-        if (isArray()) return ((MixedArray) this.value).size() == 0 ? 0 : 1;
-        try
-        {
-            return (long) toDouble();
-        }
-        catch (final NumberFormatException e)
+        switch (this.type)
         {
-            return 0;
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+            case TYPE_BOOLEAN:
+                return this.bits;
+
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return (long) doubleBits();
+
+            default:
+                return (long) toDouble();
         }
     }
 
@@ -516,16 +825,31 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public float toFloat()
     {
-        if (this.value == null) return 0;
-        if (isBoolean()) return toBoolean() ? 1 : 0;
-        if (isArray()) return ((MixedArray) this.value).size() == 0 ? 0 : 1;
-        try
-        {
-            return Float.parseFloat(this.value.toString());
-        }
-        catch (final NumberFormatException e)
+        switch (this.type)
         {
-            return 0;
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return (float) doubleBits();
+
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+            case TYPE_BOOLEAN:
+                return this.bits;
+
+            default:
+                if (isNull()) return 0;
+                if (isArray())
+                    return ((MixedArray) this.value).size() == 0 ? 0 : 1;
+                try
+                {
+                    return Float.parseFloat(toString());
+                }
+                catch (final NumberFormatException e)
+                {
+                    return 0;
+                }
         }
     }
 
@@ -539,7 +863,6 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public MixedArray toArray()
     {
-        if (this.value == null) return null;
         if (isArray())
         {
             return (MixedArray) this.value;
@@ -561,16 +884,34 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public double toDouble()
     {
-        if (this.value == null) return 0;
-        if (isBoolean()) return toBoolean() ? 1 : 0;
-        if (isArray()) return ((MixedArray) this.value).size() == 0 ? 0 : 1;
-        try
-        {
-            return Double.parseDouble(this.value.toString());
-        }
-        catch (final NumberFormatException e)
+        switch (this.type)
         {
-            return 0;
+            case TYPE_DOUBLE:
+                return doubleBits();
+
+            case TYPE_FLOAT:
+                // Use the shortest decimal representation of the float
+                return Double.parseDouble(toString());
+
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+            case TYPE_BOOLEAN:
+                return this.bits;
+
+            default:
+                if (isNull()) return 0;
+                if (isArray())
+                    return ((MixedArray) this.value).size() == 0 ? 0 : 1;
+                try
+                {
+                    return Double.parseDouble(toString());
+                }
+                catch (final NumberFormatException e)
+                {
+                    return 0;
+                }
         }
     }
 
@@ -585,29 +926,29 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public boolean toBoolean()
     {
-        if (this.value == null) return false;
-        if (isBoolean())
-        {
-            return ((Boolean) this.value).booleanValue();
-        }
-        else if (isString())
-        {
-            return toString().length() > 0;
-        }
-        else if (isNumber())
-        {
-            return toDouble() != 0;
-        }
-        else if (isChar())
-        {
-            return toChar() != '\0';
-        }
-        else if (isArray())
+        switch (this.type)
         {
-            return toArray().size() > 0;
+            case TYPE_BOOLEAN:
+            case TYPE_BYTE:
+            case TYPE_SHORT:
+            case TYPE_INT:
+            case TYPE_LONG:
+            case TYPE_CHAR:
+                return this.bits != 0;
+
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return doubleBits() != 0;
+
+            case TYPE_STRING:
+                return ((String) this.value).length() > 0;
+
+            case TYPE_ARRAY:
+                return ((MixedArray) this.value).size() > 0;
+
+            default:
+                return false;
         }
-        else
-            return false;
     }
 
 
@@ -620,12 +961,12 @@ public class Mixed implements Serializable, Comparable<Object>
     {
         if (other instanceof Mixed)
         {
-            return ((Comparable<Object>) this.value)
-                .compareTo(((Mixed) other).value);
+            return ((Comparable<Object>) getValue())
+                .compareTo(((Mixed) other).getValue());
         }
         else
         {
-            return ((Comparable<Object>) this.value).compareTo(other);
+            return ((Comparable<Object>) getValue()).compareTo(other);
         }
     }
 
@@ -650,7 +991,35 @@ public class Mixed implements Serializable, Comparable<Object>
 
     public Object getValue()
     {
-        return this.value;
+        switch (this.type)
+        {
+            case TYPE_CHAR:
+                return Character.valueOf((char) this.bits);
+
+            case TYPE_BYTE:
+                return Byte.valueOf((byte) this.bits);
+
+            case TYPE_SHORT:
+                return Short.valueOf((short) this.bits);
+
+            case TYPE_INT:
+                return Integer.valueOf((int) this.bits);
+
+            case TYPE_LONG:
+                return Long.valueOf(this.bits);
+
+            case TYPE_FLOAT:
+                return Float.valueOf((float) doubleBits());
+
+            case TYPE_DOUBLE:
+                return Double.valueOf(doubleBits());
+
+            case TYPE_BOOLEAN:
+                return Boolean.valueOf(this.bits != 0);
+
+            default:
+                return this.value;
+        }
     }
 
 
@@ -23,23 +23,75 @@
 
 package de.ailis.pherialize;
 
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 
 /**
  * A Map/List implementation with Mixed keys and values.
+ *
+ * Like PHP arrays a MixedArray starts in packed mode where the values of
+ * the consecutive integer keys 0..n-1 are stored in a plain array without
+ * any key objects or map entries. Removing entries leaves holes in the
+ * packed array. As soon as a key is inserted which doesn't continue the
+ * sequence the array switches to hash mode permanently (until it is
+ * cleared). The hash mode uses an insertion-ordered open addressing hash
+ * table (See {@link MixedHashTable}) which stores integer and string keys
+ * without wrapping them into Mixed objects.
+ *
+ * MixedArray no longer extends LinkedHashMap. Code which depends on that
+ * type must use the Map interface instead. Data written with Java
+ * serialization by the old LinkedHashMap based implementation can't be
+ * read anymore.
  * 
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
-public class MixedArray extends LinkedHashMap<Object, Object>
+public class MixedArray extends AbstractMap<Object, Object> implements
+    Cloneable, Serializable
 {
-    /** Serial version UID */
-    private static final long serialVersionUID = -194078593900457504L;
+    /**
+     * Serial version UID. Changed when the storage was switched from
+     * LinkedHashMap to packed and hash mode because the old serialized form
+     * can't be restored.
+     */
+    private static final long serialVersionUID = 3507421669837129187L;
+
+    /** The default load factor of the hash mode */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /** Empty packed values */
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    /** The load factor of the hash mode */
+    private final float loadFactor;
+
+    /**
+     * The values of the packed mode indexed by their keys. Null entries are
+     * holes left by removed entries. Null if array is in hash mode.
+     */
+    private Object[] values;
+
+    /** The number of used slots (next index) in the packed values */
+    private int length;
+
+    /** The number of entries in the packed values */
+    private int count;
+
+    /** The hash table used in hash mode. Null if array is in packed mode */
+    private MixedHashTable table;
+
+    /** The cached entry set */
+    private transient Set<Map.Entry<Object, Object>> entrySet;
 
 
     /**
@@ -53,7 +105,16 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
     public MixedArray(final int initialCapacity, final float loadFactor)
     {
-        super(initialCapacity, loadFactor);
+        super();
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: "
+                + initialCapacity);
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: "
+                + loadFactor);
+        this.loadFactor = loadFactor;
+        this.values = initialCapacity == 0 ? EMPTY_VALUES
+            : new Object[initialCapacity];
     }
 
 
@@ -66,7 +127,7 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
     public MixedArray(final int initialCapacity)
     {
-        super(initialCapacity);
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
     }
 
 
@@ -76,7 +137,7 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
     public MixedArray()
     {
-        super();
+        this(0, DEFAULT_LOAD_FACTOR);
     }
 
 
@@ -89,7 +150,8 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
     public MixedArray(final Map<?, ?> map)
     {
-        super(map);
+        this(map.size(), DEFAULT_LOAD_FACTOR);
+        putAll(map);
     }
 
 
@@ -102,36 +164,238 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
     public MixedArray(final Collection<?> list)
     {
-        super();
+        this(list.size(), DEFAULT_LOAD_FACTOR);
 
-        int i;
         Iterator<?> iterator;
+        Object value;
 
-        i = 0;
         iterator = list.iterator();
         while (iterator.hasNext())
         {
-            this.put(new Mixed(i), iterator.next());
-            i++;
+            value = iterator.next();
+            if (this.length == this.values.length) grow();
+            this.values[this.length++] = Mixed.valueOf(value);
         }
+        this.count = this.length;
     }
 
 
     /**
-     * @see java.util.HashMap#get(java.lang.Object)
+     * Returns the packed index addressed by the specified key. This is the
+     * integer value of integer keys and of strings and characters holding
+     * the decimal representation of a non-negative integer.
+     *
+     * @param key
+     *            The key
+     * @return The index or -1 if key can't address a packed value
      */
 
-    @Override
-    public Object get(final Object key)
+    private static int toIndex(final Object key)
     {
+        Mixed mixed;
+        long index;
+        String string;
+        int len, i;
+        char c;
+
         if (key instanceof Mixed)
         {
-            return super.get(key);
+            mixed = (Mixed) key;
+            if (mixed.isIntegral()) return toIndex(mixed.toLong());
+            if (mixed.isChar()) return toIndex(mixed.toChar());
+            if (!mixed.isString()) return -1;
+            string = mixed.toString();
         }
+        else if (key instanceof Integer || key instanceof Long
+            || key instanceof Short || key instanceof Byte)
+            return toIndex(((Number) key).longValue());
+        else if (key instanceof Character)
+            return toIndex(((Character) key).charValue());
+        else if (key instanceof String)
+            string = (String) key;
         else
+            return -1;
+
+        len = string.length();
+        if (len == 0 || len > 10 || (len > 1 && string.charAt(0) == '0'))
+            return -1;
+        index = 0;
+        for (i = 0; i < len; i++)
+        {
+            c = string.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            index = index * 10 + c - '0';
+        }
+        return toIndex(index);
+    }
+
+
+    /**
+     * Returns the packed index for the specified integer key.
+     *
+     * @param key
+     *            The integer key
+     * @return The index or -1 if key can't address a packed value
+     */
+
+    private static int toIndex(final long key)
+    {
+        return key < 0 || key > Integer.MAX_VALUE ? -1 : (int) key;
+    }
+
+
+    /**
+     * Returns the packed index for the specified character key.
+     *
+     * @param key
+     *            The character key
+     * @return The index or -1 if key is not a digit
+     */
+
+    private static int toIndex(final char key)
+    {
+        return key >= '0' && key <= '9' ? key - '0' : -1;
+    }
+
+
+    /**
+     * Checks if the specified key is an integer key which can be appended to
+     * the packed values without changing its type.
+     *
+     * @param key
+     *            The key
+     * @return True if integer key, false if not
+     */
+
+    private static boolean isIntegerKey(final Object key)
+    {
+        if (key instanceof Mixed) return ((Mixed) key).isIntegral();
+        return key instanceof Integer || key instanceof Long
+            || key instanceof Short || key instanceof Byte;
+    }
+
+
+    /**
+     * Grows the packed values array.
+     */
+
+    private void grow()
+    {
+        this.values = Arrays.copyOf(this.values, Math.max(8, this.length
+            + (this.length >> 1)));
+    }
+
+
+    /**
+     * Switches this array from packed mode to hash mode.
+     */
+
+    private void unpack()
+    {
+        MixedHashTable table;
+        int i;
+
+        table = new MixedHashTable(this.values.length + 1, this.loadFactor);
+        for (i = 0; i < this.length; i++)
+        {
+            if (this.values[i] != null) table.put(i, this.values[i]);
+        }
+        this.table = table;
+        this.values = null;
+        this.length = 0;
+        this.count = 0;
+    }
+
+
+    /**
+     * Checks if this array is in packed mode.
+     *
+     * @return True if array is packed, false if array is in hash mode
+     */
+
+    public boolean isPacked()
+    {
+        return this.values != null;
+    }
+
+
+    /**
+     * @see java.util.Map#size()
+     */
+
+    @Override
+    public int size()
+    {
+        return this.values != null ? this.count : this.table.size();
+    }
+
+
+    /**
+     * @see java.util.Map#clear()
+     */
+
+    @Override
+    public void clear()
+    {
+        this.values = EMPTY_VALUES;
+        this.length = 0;
+        this.count = 0;
+        this.table = null;
+    }
+
+
+    /**
+     * @see java.util.Map#entrySet()
+     */
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet()
+    {
+        if (this.entrySet == null) this.entrySet = new EntrySet();
+        return this.entrySet;
+    }
+
+
+    /**
+     * @see java.lang.Object#clone()
+     */
+
+    @Override
+    public Object clone()
+    {
+        MixedArray clone;
+
+        try
+        {
+            clone = (MixedArray) super.clone();
+        }
+        catch (final CloneNotSupportedException e)
+        {
+            throw new InternalError(e.toString());
+        }
+        if (this.values != null) clone.values = this.values.clone();
+        if (this.table != null) clone.table = this.table.clone();
+        clone.entrySet = null;
+        return clone;
+    }
+
+
+    /**
+     * @see java.util.Map#get(java.lang.Object)
+     */
+
+    @Override
+    public Object get(final Object key)
+    {
+        int index;
+
+        if (this.values != null)
         {
-            return super.get(new Mixed(key));
+            index = toIndex(key);
+            return index >= 0 && index < this.length ? this.values[index]
+                : null;
         }
+        return this.table.get(key);
     }
 
 
@@ -320,59 +584,76 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
 
     /**
-     * @see java.util.HashMap#put(java.lang.Object, java.lang.Object)
+     * @see java.util.Map#put(java.lang.Object, java.lang.Object)
      */
 
     @Override
     public Object put(final Object key, final Object value)
     {
-        Mixed mixedKey, mixedValue;
-        
-        if (!(key instanceof Mixed))
-            mixedKey = new Mixed(key);
-        else
-            mixedKey = (Mixed) key;
-        if (!(value instanceof Mixed))
-            mixedValue = new Mixed(value);
-        else
-            mixedValue = (Mixed) value;
-        return super.put(mixedKey, mixedValue);
+        Mixed mixedValue;
+        Object old;
+        int index;
+
+        mixedValue = Mixed.valueOf(value);
+        if (this.values != null)
+        {
+            index = toIndex(key);
+            if (index >= 0 && index < this.length
+                && this.values[index] != null)
+            {
+                old = this.values[index];
+                this.values[index] = mixedValue;
+                return old;
+            }
+            if (index == this.length && isIntegerKey(key))
+            {
+                if (this.length == this.values.length) grow();
+                this.values[this.length++] = mixedValue;
+                this.count++;
+                return null;
+            }
+            unpack();
+        }
+        return this.table.put(key, mixedValue);
     }
 
 
     /**
-     * @see java.util.HashMap#containsKey(java.lang.Object)
+     * @see java.util.Map#containsKey(java.lang.Object)
      */
 
     @Override
     public boolean containsKey(final Object key)
     {
-        if (key instanceof Mixed)
-        {
-            return super.containsKey(key);
-        }
-        else
+        int index;
+
+        if (this.values != null)
         {
-            return super.containsKey(new Mixed(key));
+            index = toIndex(key);
+            return index >= 0 && index < this.length
+                && this.values[index] != null;
         }
+        return this.table.containsKey(key);
     }
 
 
     /**
-     * @see java.util.HashMap#containsValue(java.lang.Object)
+     * @see java.util.Map#containsValue(java.lang.Object)
      */
 
     @Override
     public boolean containsValue(final Object value)
     {
-        if (value instanceof Mixed)
-        {
-            return super.containsValue(value);
-        }
-        else
+        Mixed mixedValue;
+        int i;
+
+        mixedValue = Mixed.valueOf(value);
+        if (this.values == null) return this.table.containsValue(mixedValue);
+        for (i = 0; i < this.length; i++)
         {
-            return super.containsValue(new Mixed(value));
+            if (mixedValue.equals(this.values[i])) return true;
         }
+        return false;
     }
 
 
@@ -391,20 +672,38 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
 
     /**
-     * @see java.util.HashMap#remove(java.lang.Object)
+     * @see java.util.Map#remove(java.lang.Object)
      */
 
     @Override
     public Object remove(final Object key)
     {
-        if (key instanceof Mixed)
-        {
-            return super.remove(key);
-        }
-        else
-        {
-            return super.remove(new Mixed(key));
-        }
+        if (this.values != null) return removePacked(toIndex(key));
+        return this.table.remove(key);
+    }
+
+
+    /**
+     * Removes the packed value with the specified index. This leaves a hole
+     * in the packed values. Trailing holes are trimmed.
+     *
+     * @param index
+     *            The index of the value to remove
+     * @return The removed value or null if there was none
+     */
+
+    private Object removePacked(final int index)
+    {
+        Object old;
+
+        if (index < 0 || index >= this.length) return null;
+        old = this.values[index];
+        if (old == null) return null;
+        this.values[index] = null;
+        this.count--;
+        while (this.length > 0 && this.values[this.length - 1] == null)
+            this.length--;
+        return old;
     }
 
 
@@ -418,7 +717,10 @@ public class MixedArray extends LinkedHashMap<Object, Object>
 
     public Object get(final int index)
     {
-        return get(new Mixed(index));
+        if (this.values != null)
+            return index >= 0 && index < this.length ? this.values[index]
+                : null;
+        return this.table.get(index);
     }
 
 
@@ -604,4 +906,252 @@ public class MixedArray extends LinkedHashMap<Object, Object>
     {
         return getMixed(index).toType(type);
     }
+
+
+    /**
+     * The entry set view of the mixed array.
+     */
+
+    private final class EntrySet extends AbstractSet<Map.Entry<Object, Object>>
+    {
+        /**
+         * @see java.util.AbstractCollection#iterator()
+         */
+
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator()
+        {
+            if (MixedArray.this.values == null)
+                return MixedArray.this.table.iterator();
+            return new PackedIterator();
+        }
+
+
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+
+        @Override
+        public int size()
+        {
+            return MixedArray.this.size();
+        }
+
+
+        /**
+         * @see java.util.AbstractCollection#clear()
+         */
+
+        @Override
+        public void clear()
+        {
+            MixedArray.this.clear();
+        }
+    }
+
+
+    /**
+     * Iterator over the entries of a packed mixed array. Holes are skipped.
+     */
+
+    private final class PackedIterator implements
+        Iterator<Map.Entry<Object, Object>>
+    {
+        /** The packed values this iterator was created for */
+        private final Object[] values;
+
+        /** The index of the next entry */
+        private int next;
+
+        /** The index of the last returned entry */
+        private int last = -1;
+
+
+        /**
+         * Constructor
+         */
+
+        PackedIterator()
+        {
+            this.values = MixedArray.this.values;
+            skipHoles();
+        }
+
+
+        /**
+         * Moves the next index over holes.
+         */
+
+        private void skipHoles()
+        {
+            while (this.next < MixedArray.this.length
+                && this.values[this.next] == null)
+                this.next++;
+        }
+
+
+        /**
+         * Checks that the array was not switched to hash mode or reallocated
+         * since the iterator was created.
+         */
+
+        private void checkValues()
+        {
+            if (MixedArray.this.values != this.values)
+                throw new ConcurrentModificationException();
+        }
+
+
+        /**
+         * @see java.util.Iterator#hasNext()
+         */
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.next < MixedArray.this.length;
+        }
+
+
+        /**
+         * @see java.util.Iterator#next()
+         */
+
+        @Override
+        public Map.Entry<Object, Object> next()
+        {
+            checkValues();
+            if (this.next >= MixedArray.this.length)
+                throw new NoSuchElementException();
+            this.last = this.next;
+            this.next++;
+            skipHoles();
+            return new PackedEntry(this.values, this.last);
+        }
+
+
+        /**
+         * @see java.util.Iterator#remove()
+         */
+
+        @Override
+        public void remove()
+        {
+            if (this.last < 0) throw new IllegalStateException();
+            checkValues();
+            removePacked(this.last);
+            this.last = -1;
+        }
+    }
+
+
+    /**
+     * A single entry of a packed mixed array.
+     */
+
+    private static final class PackedEntry implements Map.Entry<Object, Object>
+    {
+        /** The packed values */
+        private final Object[] values;
+
+        /** The index of the entry */
+        private final int index;
+
+
+        /**
+         * Constructor
+         *
+         * @param values
+         *            The packed values
+         * @param index
+         *            The index of the entry
+         */
+
+        PackedEntry(final Object[] values, final int index)
+        {
+            this.values = values;
+            this.index = index;
+        }
+
+
+        /**
+         * @see java.util.Map.Entry#getKey()
+         */
+
+        @Override
+        public Object getKey()
+        {
+            return Mixed.valueOf(this.index);
+        }
+
+
+        /**
+         * @see java.util.Map.Entry#getValue()
+         */
+
+        @Override
+        public Object getValue()
+        {
+            return this.values[this.index];
+        }
+
+
+        /**
+         * @see java.util.Map.Entry#setValue(java.lang.Object)
+         */
+
+        @Override
+        public Object setValue(final Object value)
+        {
+            Object old;
+
+            old = this.values[this.index];
+            this.values[this.index] = Mixed.valueOf(value);
+            return old;
+        }
+
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            Map.Entry<?, ?> entry;
+            Object value;
+
+            if (!(other instanceof Map.Entry<?, ?>)) return false;
+            entry = (Map.Entry<?, ?>) other;
+            value = getValue();
+            return getKey().equals(entry.getKey())
+                && (value == null ? entry.getValue() == null : value
+                    .equals(entry.getValue()));
+        }
+
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+
+        @Override
+        public int hashCode()
+        {
+            Object value;
+
+            value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+
+        @Override
+        public String toString()
+        {
+            return this.index + "=" + getValue();
+        }
+    }
 }
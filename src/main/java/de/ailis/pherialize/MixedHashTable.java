@@ -0,0 +1,863 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Insertion-ordered hash table used by MixedArray in hash mode. Like the
+ * hash tables of PHP 7 the entries are stored in dense parallel arrays in
+ * insertion order and an int array is used as an open addressing index
+ * (linear probing) into these entries. Integer keys are stored unboxed in
+ * the hash array, string keys are stored as plain strings and only other key
+ * types are stored as Mixed objects. Removed entries leave holes in the
+ * entry arrays which are compacted when the arrays are full.
+ *
+ * Keys are compared with the semantics of Mixed, so the integer 5 and the
+ * string "5" address the same entry.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class MixedHashTable implements Cloneable, Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 6284931734722618231L;
+
+    /** Marker returned by numericKey() for non-numeric keys */
+    private static final long NOT_NUMERIC = Long.MIN_VALUE;
+
+    /** The load factor of the index */
+    private final float loadFactor;
+
+    /**
+     * The keys of the entries. Null for integer keys (The key is stored in
+     * the hashes array), a String for string keys or a Mixed for other keys.
+     */
+    private Object[] keys;
+
+    /** The hashes of the entries. This is the key itself for integer keys */
+    private int[] hashes;
+
+    /** The values of the entries. Null for removed entries */
+    private Object[] values;
+
+    /** The number of used entry slots including holes */
+    private int used;
+
+    /** The number of entries */
+    private int size;
+
+    /** The open addressing index. Entry position + 1 or 0 for empty slots */
+    private int[] index;
+
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity
+     *            The initial capacity
+     * @param loadFactor
+     *            The load factor of the index
+     */
+
+    MixedHashTable(final int initialCapacity, final float loadFactor)
+    {
+        this.loadFactor = Math.min(loadFactor, 0.9f);
+        allocate(Math.max(8, initialCapacity));
+    }
+
+
+    /**
+     * Allocates new empty entry arrays and a new index for the specified
+     * number of entries.
+     *
+     * @param capacity
+     *            The entry capacity
+     */
+
+    private void allocate(final int capacity)
+    {
+        int indexSize;
+
+        indexSize = Integer.highestOneBit(Math.max(2,
+            (int) (capacity / this.loadFactor) + 1) - 1) << 1;
+        this.keys = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.values = new Object[capacity];
+        this.index = new int[indexSize];
+    }
+
+
+    /**
+     * Returns the numeric value of the specified key. Integer keys, strings
+     * holding the canonical decimal representation of an integer and digit
+     * characters are numeric if the value fits into an int.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @return The numeric value or NOT_NUMERIC if key is not numeric
+     */
+
+    private static long numericKey(final Object key)
+    {
+        Mixed mixed;
+
+        if (key instanceof Mixed)
+        {
+            mixed = (Mixed) key;
+            if (mixed.isIntegral()) return numericKey(mixed.toLong());
+            if (mixed.isChar()) return numericKey(mixed.toChar());
+            if (mixed.isString()) return parseNumeric(mixed.toString());
+            return NOT_NUMERIC;
+        }
+        if (key instanceof Integer || key instanceof Long
+            || key instanceof Short || key instanceof Byte)
+            return numericKey(((Number) key).longValue());
+        if (key instanceof Character)
+            return numericKey(((Character) key).charValue());
+        if (key instanceof String) return parseNumeric((String) key);
+        return NOT_NUMERIC;
+    }
+
+
+    /**
+     * Returns the numeric value of the specified integer key.
+     *
+     * @param key
+     *            The integer key
+     * @return The numeric value or NOT_NUMERIC if key doesn't fit into an int
+     */
+
+    private static long numericKey(final long key)
+    {
+        return key < Integer.MIN_VALUE || key > Integer.MAX_VALUE
+            ? NOT_NUMERIC : key;
+    }
+
+
+    /**
+     * Returns the numeric value of the specified character key.
+     *
+     * @param key
+     *            The character key
+     * @return The numeric value or NOT_NUMERIC if key is not a digit
+     */
+
+    private static long numericKey(final char key)
+    {
+        return key >= '0' && key <= '9' ? key - '0' : NOT_NUMERIC;
+    }
+
+
+    /**
+     * Parses the specified string as a numeric key. Only the canonical
+     * decimal representation of an int value is accepted.
+     *
+     * @param string
+     *            The string to parse
+     * @return The numeric value or NOT_NUMERIC if string is not numeric
+     */
+
+    private static long parseNumeric(final String string)
+    {
+        int len, i, start;
+        long number;
+        char c;
+
+        len = string.length();
+        if (len == 0 || len > 11) return NOT_NUMERIC;
+        c = string.charAt(0);
+        if (c != '-' && (c < '0' || c > '9')) return NOT_NUMERIC;
+        start = c == '-' ? 1 : 0;
+        if (start == len) return NOT_NUMERIC;
+        if (string.charAt(start) == '0' && (len > 1)) return NOT_NUMERIC;
+        number = 0;
+        for (i = start; i < len; i++)
+        {
+            c = string.charAt(i);
+            if (c < '0' || c > '9') return NOT_NUMERIC;
+            number = number * 10 + c - '0';
+        }
+        if (start == 1) number = -number;
+        return number < Integer.MIN_VALUE || number > Integer.MAX_VALUE
+            ? NOT_NUMERIC : number;
+    }
+
+
+    /**
+     * Returns the hash of the specified non-numeric key. This is the same
+     * hash as the one of the corresponding Mixed.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @return The hash
+     */
+
+    private static int hash(final Object key)
+    {
+        if (key instanceof String || key instanceof Mixed)
+            return key.hashCode();
+        return new Mixed(key).hashCode();
+    }
+
+
+    /**
+     * Checks if the specified stored key is equal to the specified key.
+     *
+     * @param stored
+     *            The stored key (String or Mixed)
+     * @param key
+     *            The key to compare (Mixed or plain Java object)
+     * @return True if keys are equal, false if not
+     */
+
+    private static boolean keyEquals(final Object stored, final Object key)
+    {
+        if (stored == key) return true;
+        if (key instanceof Mixed) return key.equals(stored);
+        if (stored instanceof Mixed) return stored.equals(key);
+        if (key instanceof String) return stored.equals(key);
+        return new Mixed(key).equals(stored);
+    }
+
+
+    /**
+     * Returns the index slot for the specified hash.
+     *
+     * @param hash
+     *            The hash
+     * @return The index slot
+     */
+
+    private int slot(final int hash)
+    {
+        int h;
+
+        h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (this.index.length - 1);
+    }
+
+
+    /**
+     * Returns the position of the entry with the specified integer key.
+     *
+     * @param key
+     *            The integer key
+     * @return The entry position or -1 if not found
+     */
+
+    private int findNumeric(final int key)
+    {
+        int slot, entry, mask;
+        Object stored;
+
+        mask = this.index.length - 1;
+        slot = slot(key);
+        while ((entry = this.index[slot] - 1) >= 0)
+        {
+            if (this.hashes[entry] == key)
+            {
+                stored = this.keys[entry];
+                if (stored == null || numericKey(stored) == key) return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the position of the entry with the specified key.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @return The entry position or -1 if not found
+     */
+
+    private int find(final Object key)
+    {
+        long number;
+        int hash, slot, entry, mask;
+        Object stored;
+
+        number = numericKey(key);
+        if (number != NOT_NUMERIC) return findNumeric((int) number);
+        mask = this.index.length - 1;
+        hash = hash(key);
+        slot = slot(hash);
+        while ((entry = this.index[slot] - 1) >= 0)
+        {
+            if (this.hashes[entry] == hash)
+            {
+                stored = this.keys[entry];
+                if (stored != null && keyEquals(stored, key)) return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries
+     */
+
+    int size()
+    {
+        return this.size;
+    }
+
+
+    /**
+     * Returns the value of the entry with the specified key.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @return The value or null if not found
+     */
+
+    Object get(final Object key)
+    {
+        int entry;
+
+        entry = find(key);
+        return entry < 0 ? null : this.values[entry];
+    }
+
+
+    /**
+     * Returns the value of the entry with the specified integer key.
+     *
+     * @param key
+     *            The integer key
+     * @return The value or null if not found
+     */
+
+    Object get(final int key)
+    {
+        int entry;
+
+        entry = findNumeric(key);
+        return entry < 0 ? null : this.values[entry];
+    }
+
+
+    /**
+     * Checks if an entry with the specified key exists.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @return True if entry exists, false if not
+     */
+
+    boolean containsKey(final Object key)
+    {
+        return find(key) >= 0;
+    }
+
+
+    /**
+     * Checks if the specified value exists.
+     *
+     * @param value
+     *            The value to search
+     * @return True if value exists, false if not
+     */
+
+    boolean containsValue(final Object value)
+    {
+        int i;
+
+        for (i = 0; i < this.used; i++)
+        {
+            if (this.values[i] != null && value.equals(this.values[i]))
+                return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Puts a value into the table.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @param value
+     *            The value
+     * @return The previous value or null if there was none
+     */
+
+    Object put(final Object key, final Object value)
+    {
+        Object stored, old;
+        long number;
+        int entry, hash;
+
+        number = numericKey(key);
+        if (number != NOT_NUMERIC)
+        {
+            hash = (int) number;
+            entry = findNumeric(hash);
+        }
+        else
+        {
+            hash = hash(key);
+            entry = find(key);
+        }
+        if (entry >= 0)
+        {
+            old = this.values[entry];
+            this.values[entry] = value;
+            return old;
+        }
+
+        if (number != NOT_NUMERIC
+            && (key instanceof Mixed ? ((Mixed) key).isIntegral()
+                : !(key instanceof String || key instanceof Character)))
+            stored = null;
+        else if (key instanceof String)
+            stored = key;
+        else if (key instanceof Mixed && ((Mixed) key).isString())
+            stored = key.toString();
+        else
+            stored = Mixed.valueOf(key);
+        insert(stored, hash, value);
+        return null;
+    }
+
+
+    /**
+     * Puts a value with an integer key into the table.
+     *
+     * @param key
+     *            The integer key
+     * @param value
+     *            The value
+     * @return The previous value or null if there was none
+     */
+
+    Object put(final int key, final Object value)
+    {
+        Object old;
+        int entry;
+
+        entry = findNumeric(key);
+        if (entry >= 0)
+        {
+            old = this.values[entry];
+            this.values[entry] = value;
+            return old;
+        }
+        insert(null, key, value);
+        return null;
+    }
+
+
+    /**
+     * Appends a new entry which is known to be not present in the table.
+     *
+     * @param key
+     *            The stored key (null for integer keys)
+     * @param hash
+     *            The hash (The key itself for integer keys)
+     * @param value
+     *            The value
+     */
+
+    private void insert(final Object key, final int hash, final Object value)
+    {
+        int entry, slot, mask;
+
+        if (this.used == this.keys.length) resize();
+        entry = this.used++;
+        this.keys[entry] = key;
+        this.hashes[entry] = hash;
+        this.values[entry] = value;
+        this.size++;
+        mask = this.index.length - 1;
+        slot = slot(hash);
+        while (this.index[slot] != 0)
+            slot = (slot + 1) & mask;
+        this.index[slot] = entry + 1;
+    }
+
+
+    /**
+     * Makes room for new entries by compacting the entry arrays if more
+     * than a quarter of them are holes or by growing them otherwise. The
+     * index is rebuilt.
+     */
+
+    private void resize()
+    {
+        Object[] oldKeys, oldValues;
+        int[] oldHashes;
+        int oldUsed, i, entry, slot, mask;
+
+        oldKeys = this.keys;
+        oldHashes = this.hashes;
+        oldValues = this.values;
+        oldUsed = this.used;
+        if (this.size > oldUsed - (oldUsed >> 2))
+            allocate(oldUsed + (oldUsed >> 1) + 1);
+        else
+            allocate(oldKeys.length);
+        mask = this.index.length - 1;
+        entry = 0;
+        for (i = 0; i < oldUsed; i++)
+        {
+            if (oldValues[i] == null) continue;
+            this.keys[entry] = oldKeys[i];
+            this.hashes[entry] = oldHashes[i];
+            this.values[entry] = oldValues[i];
+            slot = slot(oldHashes[i]);
+            while (this.index[slot] != 0)
+                slot = (slot + 1) & mask;
+            this.index[slot] = entry + 1;
+            entry++;
+        }
+        this.used = entry;
+    }
+
+
+    /**
+     * Removes the entry with the specified key.
+     *
+     * @param key
+     *            The key (Mixed or plain Java object)
+     * @return The removed value or null if not found
+     */
+
+    Object remove(final Object key)
+    {
+        int entry;
+
+        entry = find(key);
+        return entry < 0 ? null : removeEntry(entry);
+    }
+
+
+    /**
+     * Removes the entry at the specified position. The index slot is freed
+     * by shifting back following slots of the probe sequence.
+     *
+     * @param entry
+     *            The entry position
+     * @return The removed value
+     */
+
+    private Object removeEntry(final int entry)
+    {
+        Object old;
+        int mask, hole, slot, home;
+
+        mask = this.index.length - 1;
+        hole = slot(this.hashes[entry]);
+        while (this.index[hole] != entry + 1)
+            hole = (hole + 1) & mask;
+        slot = hole;
+        while (true)
+        {
+            slot = (slot + 1) & mask;
+            if (this.index[slot] == 0) break;
+            home = slot(this.hashes[this.index[slot] - 1]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask))
+            {
+                this.index[hole] = this.index[slot];
+                hole = slot;
+            }
+        }
+        this.index[hole] = 0;
+
+        old = this.values[entry];
+        this.keys[entry] = null;
+        this.values[entry] = null;
+        this.size--;
+        while (this.used > 0 && this.values[this.used - 1] == null)
+            this.used--;
+        return old;
+    }
+
+
+    /**
+     * Returns the key of the entry at the specified position.
+     *
+     * @param entry
+     *            The entry position
+     * @return The key
+     */
+
+    private Mixed getKey(final int entry)
+    {
+        Object key;
+
+        key = this.keys[entry];
+        if (key == null) return Mixed.valueOf(this.hashes[entry]);
+        if (key instanceof Mixed) return (Mixed) key;
+        return new Mixed(key);
+    }
+
+
+    /**
+     * Returns an iterator over the entries in insertion order.
+     *
+     * @return The entry iterator
+     */
+
+    Iterator<Map.Entry<Object, Object>> iterator()
+    {
+        return new EntryIterator();
+    }
+
+
+    /**
+     * @see java.lang.Object#clone()
+     */
+
+    @Override
+    public MixedHashTable clone()
+    {
+        MixedHashTable clone;
+
+        try
+        {
+            clone = (MixedHashTable) super.clone();
+        }
+        catch (final CloneNotSupportedException e)
+        {
+            throw new InternalError(e.toString());
+        }
+        clone.keys = this.keys.clone();
+        clone.hashes = this.hashes.clone();
+        clone.values = this.values.clone();
+        clone.index = this.index.clone();
+        return clone;
+    }
+
+
+    /**
+     * Iterator over the entries of the hash table.
+     */
+
+    private final class EntryIterator implements
+        Iterator<Map.Entry<Object, Object>>
+    {
+        /** The values array this iterator was created for */
+        private final Object[] values;
+
+        /** The position of the next entry */
+        private int next;
+
+        /** The position of the last returned entry */
+        private int last = -1;
+
+
+        /**
+         * Constructor
+         */
+
+        EntryIterator()
+        {
+            this.values = MixedHashTable.this.values;
+            skipHoles();
+        }
+
+
+        /**
+         * Moves the next position over holes.
+         */
+
+        private void skipHoles()
+        {
+            while (this.next < MixedHashTable.this.used
+                && this.values[this.next] == null)
+                this.next++;
+        }
+
+
+        /**
+         * @see java.util.Iterator#hasNext()
+         */
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.next < MixedHashTable.this.used;
+        }
+
+
+        /**
+         * @see java.util.Iterator#next()
+         */
+
+        @Override
+        public Map.Entry<Object, Object> next()
+        {
+            if (MixedHashTable.this.values != this.values)
+                throw new ConcurrentModificationException();
+            if (this.next >= MixedHashTable.this.used)
+                throw new NoSuchElementException();
+            this.last = this.next;
+            this.next++;
+            skipHoles();
+            return new Entry(this.values, this.last);
+        }
+
+
+        /**
+         * @see java.util.Iterator#remove()
+         */
+
+        @Override
+        public void remove()
+        {
+            if (this.last < 0) throw new IllegalStateException();
+            if (MixedHashTable.this.values != this.values)
+                throw new ConcurrentModificationException();
+            removeEntry(this.last);
+            this.last = -1;
+        }
+    }
+
+
+    /**
+     * A single entry of the hash table.
+     */
+
+    private final class Entry implements Map.Entry<Object, Object>
+    {
+        /** The values array of the entry */
+        private final Object[] values;
+
+        /** The position of the entry */
+        private final int entry;
+
+
+        /**
+         * Constructor
+         *
+         * @param values
+         *            The values array of the entry
+         * @param entry
+         *            The position of the entry
+         */
+
+        Entry(final Object[] values, final int entry)
+        {
+            this.values = values;
+            this.entry = entry;
+        }
+
+
+        /**
+         * @see java.util.Map.Entry#getKey()
+         */
+
+        @Override
+        public Object getKey()
+        {
+            return MixedHashTable.this.getKey(this.entry);
+        }
+
+
+        /**
+         * @see java.util.Map.Entry#getValue()
+         */
+
+        @Override
+        public Object getValue()
+        {
+            return this.values[this.entry];
+        }
+
+
+        /**
+         * @see java.util.Map.Entry#setValue(java.lang.Object)
+         */
+
+        @Override
+        public Object setValue(final Object value)
+        {
+            Object old;
+
+            old = this.values[this.entry];
+            this.values[this.entry] = Mixed.valueOf(value);
+            return old;
+        }
+
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            Map.Entry<?, ?> entry;
+            Object value;
+
+            if (!(other instanceof Map.Entry<?, ?>)) return false;
+            entry = (Map.Entry<?, ?>) other;
+            value = getValue();
+            return getKey().equals(entry.getKey())
+                && (value == null ? entry.getValue() == null : value
+                    .equals(entry.getValue()));
+        }
+
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+
+        @Override
+        public int hashCode()
+        {
+            Object value;
+
+            value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+
+        @Override
+        public String toString()
+        {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+
+/**
+ * A PHP object of a class which is not registered in the class registry of
+ * the unserializer. The properties are stored like the entries of an array
+ * and the PHP class name is attached. Serializing it produces a PHP object
+ * again.
+ *
+ * The property names are stored exactly as serialized by PHP. The names of
+ * protected properties are prefixed with "\0*\0" and the names of private
+ * properties with the declaring class name enclosed in null bytes, so
+ * properties with the same name but different visibility don't collide.
+ * Use {@link #getProperty(String)} to look up a property by its plain name.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class MixedObject extends MixedArray
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 4969342470216862049L;
+
+    /** The PHP class name */
+    private final String className;
+
+
+    /**
+     * Constructor
+     *
+     * @param className
+     *            The PHP class name
+     */
+
+    public MixedObject(final String className)
+    {
+        super();
+        this.className = className;
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param className
+     *            The PHP class name
+     * @param initialCapacity
+     *            The initial capacity
+     */
+
+    public MixedObject(final String className, final int initialCapacity)
+    {
+        super(initialCapacity);
+        this.className = className;
+    }
+
+
+    /**
+     * Returns the PHP class name.
+     *
+     * @return The PHP class name
+     */
+
+    public String getClassName()
+    {
+        return this.className;
+    }
+
+
+    /**
+     * Returns the value of the property with the specified plain name
+     * regardless of its visibility. A public property is preferred over a
+     * protected one and a protected property over a private one.
+     *
+     * @param name
+     *            The plain property name without visibility prefix
+     * @return The property value or null if there is no such property
+     */
+
+    public Mixed getProperty(final String name)
+    {
+        String key;
+
+        if (containsKey(name)) return (Mixed) get(name);
+        if (containsKey("\0*\0" + name)) return (Mixed) get("\0*\0" + name);
+        if (containsKey("\0" + this.className + "\0" + name))
+            return (Mixed) get("\0" + this.className + "\0" + name);
+
+        // Private property of a parent class
+        for (final Object entry: keySet())
+        {
+            key = entry.toString();
+            if (key.length() > name.length() + 1 && key.charAt(0) == 0
+                && key.endsWith(name)
+                && key.charAt(key.length() - name.length() - 1) == 0)
+                return (Mixed) get(entry);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.nio.charset.Charset;
+
+
+/**
+ * Output target of the serializer. Implementations either build a string or
+ * write the encoded bytes to a stream.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+abstract class Output
+{
+    /** The charset of the serialized data */
+    protected final Charset charset;
+
+    /** The calculator for the encoded lengths of strings */
+    protected final EncodedLength encodedLength;
+
+
+    /**
+     * Constructor
+     *
+     * @param charset
+     *            The charset of the serialized data
+     */
+
+    protected Output(final Charset charset)
+    {
+        super();
+        this.charset = charset;
+        this.encodedLength = new EncodedLength(charset);
+    }
+
+
+    /**
+     * Returns the number of decimal digits of the specified non-negative
+     * number.
+     *
+     * @param value
+     *            The non-negative number
+     * @return The number of decimal digits
+     */
+
+    static int countDigits(final long value)
+    {
+        int digits;
+        long limit;
+
+        digits = 1;
+        for (limit = 10; digits < 19 && value >= limit; limit *= 10)
+            digits++;
+        return digits;
+    }
+
+
+    /**
+     * Appends the specified ASCII character.
+     *
+     * @param c
+     *            The character to append
+     */
+
+    abstract void append(char c);
+
+
+    /**
+     * Appends the specified ASCII text.
+     *
+     * @param text
+     *            The text to append
+     */
+
+    abstract void append(String text);
+
+
+    /**
+     * Appends the decimal representation of the specified number.
+     *
+     * @param number
+     *            The number to append
+     */
+
+    abstract void append(long number);
+
+
+    /**
+     * Appends the decimal representation of the specified number.
+     *
+     * @param number
+     *            The number to append
+     */
+
+    void append(final double number)
+    {
+        append(Double.toString(number));
+    }
+
+
+    /**
+     * Appends the specified text encoded in the charset of the serialized
+     * data.
+     *
+     * @param text
+     *            The text to append
+     */
+
+    abstract void appendText(String text);
+
+
+    /**
+     * Appends the specified PHP class name with its length in bytes
+     * (<length>:"<name>") as used in the header of a serialized object.
+     *
+     * @param className
+     *            The class name to append
+     */
+
+    void appendClassName(final String className)
+    {
+        append(this.encodedLength.of(className));
+        append(":\"");
+        appendText(className);
+        append('"');
+    }
+
+
+    /**
+     * Appends the specified string as a PHP string value including the
+     * header with the length of the string in bytes.
+     *
+     * @param string
+     *            The string to append
+     */
+
+    abstract void appendString(String string);
+}
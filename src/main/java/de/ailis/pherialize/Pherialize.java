@@ -24,6 +24,7 @@
 package de.ailis.pherialize;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -31,12 +32,27 @@ import java.nio.charset.Charset;
  * serialize and unserialize for easier usage of the Serializer and
  * Unserializer classes.
  *
+ * The methods are thread-safe. Each thread reuses its own serializer and
+ * unserializer (including their buffers, reference histories and a key
+ * cache) instead of creating new ones for every call.
+ *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
  */
 
 public class Pherialize
 {
+    /** The reusable serializer of the current thread. Null while in use */
+    private static final ThreadLocal<Serializer> SERIALIZER =
+        new ThreadLocal<Serializer>();
+
+    /** The reusable unserializer of the current thread. Null while in use */
+    private static final ThreadLocal<Unserializer> UNSERIALIZER =
+        new ThreadLocal<Unserializer>();
+
+    /** The empty data a released unserializer is reset to */
+    private static final byte[] NO_DATA = new byte[0];
+
     /**
      * Hide constructor
      */
@@ -59,10 +75,17 @@ public class Pherialize
 
     public static String serialize(final Object object, Charset charset)
     {
-        Serializer pherialize;
+        Serializer serializer;
 
-        pherialize = new Serializer(charset);
-        return pherialize.serialize(object);
+        serializer = acquireSerializer(charset);
+        try
+        {
+            return serializer.serialize(object);
+        }
+        finally
+        {
+            releaseSerializer(serializer);
+        }
     }
 
 
@@ -76,10 +99,7 @@ public class Pherialize
 
     public static String serialize(final Object object)
     {
-        Serializer pherialize;
-
-        pherialize = new Serializer();
-        return pherialize.serialize(object);
+        return serialize(object, StandardCharsets.UTF_8);
     }
 
 
@@ -102,8 +122,15 @@ public class Pherialize
     {
         Unserializer unserializer;
 
-        unserializer = new Unserializer(data, charset);
-        return unserializer.unserializeObject();
+        unserializer = acquireUnserializer(data.getBytes(charset), charset);
+        try
+        {
+            return unserializer.unserializeObject();
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
     }
 
 
@@ -121,10 +148,313 @@ public class Pherialize
      */
 
     public static Mixed unserialize(final String data)
+    {
+        return unserialize(data, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Returns the unserialized object of the specified PHP serialize format
+     * data. The data is parsed directly from the raw bytes without decoding
+     * it into a string first.
+     *
+     * @param data
+     *            The serialized data
+     * @param charset
+     *            The charset of data.
+     * @return The unserialized object
+     */
+
+    public static Mixed unserialize(final byte[] data, Charset charset)
     {
         Unserializer unserializer;
 
-        unserializer = new Unserializer(data);
-        return unserializer.unserializeObject();
+        unserializer = acquireUnserializer(data, charset);
+        try
+        {
+            return unserializer.unserializeObject();
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
+    }
+
+
+    /**
+     * Returns the unserialized object of the specified UTF-8 encoded PHP
+     * serialize format data. The data is parsed directly from the raw bytes
+     * without decoding it into a string first.
+     *
+     * @param data
+     *            The serialized data
+     * @return The unserialized object
+     */
+
+    public static Mixed unserialize(final byte[] data)
+    {
+        return unserialize(data, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Returns the unserialized object of the specified PHP serialize format
+     * string decoded directly into the specified type.
+     *
+     * @param <T>
+     *            The target type
+     * @param data
+     *            The serialized data
+     * @param type
+     *            The target type
+     * @return The unserialized object
+     * @see Unserializer#unserializeObject(Class)
+     */
+
+    public static <T> T unserialize(final String data, final Class<T> type)
+    {
+        Unserializer unserializer;
+
+        unserializer = acquireUnserializer(data.getBytes(
+            StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        try
+        {
+            return unserializer.unserializeObject(type);
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
+    }
+
+
+    /**
+     * Returns the unserialized object of the specified UTF-8 encoded PHP
+     * serialize format data decoded directly into the specified type.
+     *
+     * @param <T>
+     *            The target type
+     * @param data
+     *            The serialized data
+     * @param type
+     *            The target type
+     * @return The unserialized object
+     * @see Unserializer#unserializeObject(Class)
+     */
+
+    public static <T> T unserialize(final byte[] data, final Class<T> type)
+    {
+        Unserializer unserializer;
+
+        unserializer = acquireUnserializer(data, StandardCharsets.UTF_8);
+        try
+        {
+            return unserializer.unserializeObject(type);
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
+    }
+
+
+    /**
+     * Returns the unserialized object of the specified PHP serialize format
+     * string decoded directly into the specified generic type.
+     *
+     * @param <T>
+     *            The target type
+     * @param data
+     *            The serialized data
+     * @param type
+     *            The target type reference
+     * @return The unserialized object
+     * @see Unserializer#unserializeObject(TypeReference)
+     */
+
+    public static <T> T unserialize(final String data,
+        final TypeReference<T> type)
+    {
+        Unserializer unserializer;
+
+        unserializer = acquireUnserializer(data.getBytes(
+            StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        try
+        {
+            return unserializer.unserializeObject(type);
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
+    }
+
+
+    /**
+     * Returns the unserialized object of the specified UTF-8 encoded PHP
+     * serialize format data decoded directly into the specified generic type.
+     *
+     * @param <T>
+     *            The target type
+     * @param data
+     *            The serialized data
+     * @param type
+     *            The target type reference
+     * @return The unserialized object
+     * @see Unserializer#unserializeObject(TypeReference)
+     */
+
+    public static <T> T unserialize(final byte[] data,
+        final TypeReference<T> type)
+    {
+        Unserializer unserializer;
+
+        unserializer = acquireUnserializer(data, StandardCharsets.UTF_8);
+        try
+        {
+            return unserializer.unserializeObject(type);
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
+    }
+
+
+    /**
+     * Extracts the value at the specified path of array keys or property
+     * names from the specified PHP serialize format data without
+     * unserializing the rest of the data.
+     *
+     * @param data
+     *            The serialized data
+     * @param charset
+     *            The charset of data
+     * @param path
+     *            The array keys or property names leading to the value
+     * @return The extracted value. Null if the path doesn't exist or the
+     *         value is null
+     * @see Unserializer#extract(String...)
+     */
+
+    public static Mixed extract(final byte[] data, final Charset charset,
+        final String... path)
+    {
+        Unserializer unserializer;
+
+        unserializer = acquireUnserializer(data, charset);
+        try
+        {
+            return unserializer.extract(path);
+        }
+        finally
+        {
+            releaseUnserializer(unserializer);
+        }
+    }
+
+
+    /**
+     * Extracts the value at the specified path of array keys or property
+     * names from the specified UTF-8 encoded PHP serialize format data
+     * without unserializing the rest of the data.
+     *
+     * @param data
+     *            The serialized data
+     * @param path
+     *            The array keys or property names leading to the value
+     * @return The extracted value. Null if the path doesn't exist or the
+     *         value is null
+     * @see Unserializer#extract(String...)
+     */
+
+    public static Mixed extract(final byte[] data, final String... path)
+    {
+        return extract(data, StandardCharsets.UTF_8, path);
+    }
+
+
+    /**
+     * Returns the reusable serializer of the current thread for the
+     * specified charset. A new serializer is returned if the reusable one is
+     * already in use (When serializing recursively) or has a different
+     * charset.
+     *
+     * @param charset
+     *            The charset of the serialized data
+     * @return The serializer
+     */
+
+    private static Serializer acquireSerializer(final Charset charset)
+    {
+        Serializer serializer;
+
+        serializer = SERIALIZER.get();
+        if (serializer == null || !serializer.getCharset().equals(charset))
+            return new Serializer(charset);
+        SERIALIZER.set(null);
+        return serializer;
+    }
+
+
+    /**
+     * Resets the specified serializer and makes it the reusable serializer
+     * of the current thread.
+     *
+     * @param serializer
+     *            The serializer returned by acquireSerializer()
+     */
+
+    private static void releaseSerializer(final Serializer serializer)
+    {
+        serializer.reset();
+        SERIALIZER.set(serializer);
+    }
+
+
+    /**
+     * Returns the reusable unserializer of the current thread reset to the
+     * specified data. A new unserializer with its own key cache is returned
+     * if the reusable one is already in use (When unserializing recursively)
+     * or has a different charset.
+     *
+     * @param data
+     *            The data to unserialize
+     * @param charset
+     *            The charset of the data
+     * @return The unserializer
+     */
+
+    private static Unserializer acquireUnserializer(final byte[] data,
+        final Charset charset)
+    {
+        Unserializer unserializer;
+
+        unserializer = UNSERIALIZER.get();
+        if (unserializer == null || !unserializer.getCharset().equals(charset))
+        {
+            unserializer = new Unserializer(data, charset);
+            unserializer.setKeyCache(new KeyCache());
+            return unserializer;
+        }
+        UNSERIALIZER.set(null);
+        unserializer.reset(data);
+        return unserializer;
+    }
+
+
+    /**
+     * Resets the specified unserializer to empty data so it no longer holds
+     * on to the data and the result and makes it the reusable unserializer
+     * of the current thread.
+     *
+     * @param unserializer
+     *            The unserializer returned by acquireUnserializer()
+     */
+
+    private static void releaseUnserializer(final Unserializer unserializer)
+    {
+        unserializer.reset(NO_DATA);
+        UNSERIALIZER.set(unserializer);
     }
 }
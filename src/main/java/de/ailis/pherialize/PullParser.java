@@ -0,0 +1,1157 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import de.ailis.pherialize.exceptions.UnserializeException;
+
+
+/**
+ * A low-level pull parser for the PHP serialize format. The data is read
+ * token by token with {@link #nextToken()}. Numbers, booleans, sizes and
+ * references are parsed into primitive fields and can be read with the
+ * accessors without any allocation. Strings are only decoded when
+ * {@link #getString()} is called.
+ *
+ * An array is reported as a {@link #START_ARRAY} token followed by a
+ * {@link #KEY} token and the value tokens for each entry and a final
+ * {@link #END} token. PHP objects are reported the same way starting with a
+ * {@link #START_OBJECT} token. References are not resolved but reported as
+ * {@link #REFERENCE} tokens with the 1-based reference slot. PHP references
+ * (R:n;) and object references (r:n;) are reported the same way.
+ *
+ * The parser is the engine underneath the {@link Unserializer} and can be
+ * used to build custom consumers which count, filter or copy the data into
+ * own structures.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class PullParser
+{
+    /** Token for the start of an array. The size is the number of entries */
+    public static final int START_ARRAY = 1;
+
+    /** Token for an array key or property name */
+    public static final int KEY = 2;
+
+    /** Token for an integer value */
+    public static final int INT = 3;
+
+    /** Token for a double value */
+    public static final int DOUBLE = 4;
+
+    /** Token for a string value */
+    public static final int STRING = 5;
+
+    /** Token for a boolean value */
+    public static final int BOOL = 6;
+
+    /** Token for a null value */
+    public static final int NULL = 7;
+
+    /** Token for a reference to an earlier value */
+    public static final int REFERENCE = 8;
+
+    /**
+     * Token for the start of a PHP object. The size is the number of
+     * properties
+     */
+    public static final int START_OBJECT = 9;
+
+    /** Token for the end of an array or object */
+    public static final int END = 10;
+
+    /** The charset used for parsing the ASCII headers of the data */
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+    /** The powers of ten which are exactly representable as doubles */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The initial buffer size when reading from a stream or channel */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The current pointer in the data */
+    int pos;
+
+    /** The end of the data (exclusive) */
+    int end;
+
+    /** The data to parse */
+    byte[] data;
+
+    /**
+     * The position in the input corresponding to the start of the data
+     * buffer. Only used for error messages.
+     */
+    private long base;
+
+    /** The input stream to read from. Null if not reading from a stream */
+    private InputStream stream;
+
+    /** The channel to read from. Null if not reading from a channel */
+    private ReadableByteChannel channel;
+
+    /** The original charset of the input data. */
+    private final Charset charset;
+
+    /** The current token. 0 if no token has been read yet */
+    private int token;
+
+    /** The integer value, size, reference or boolean of the current token */
+    private long number;
+
+    /** The double value of the current token */
+    private double doubleValue;
+
+    /** The offset of the current string in the data */
+    private int stringOffset;
+
+    /** The length of the current string in bytes */
+    private int stringLength;
+
+    /** If the current key is an integer key */
+    private boolean integerKey;
+
+    /** The class name of the current object */
+    private String className;
+
+    /** The number of remaining entries of the open arrays and objects */
+    private int[] remaining = new int[16];
+
+    /** The number of open arrays and objects */
+    private int depth;
+
+    /** If a key has been read and the value is expected */
+    private boolean valueExpected;
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The data to parse
+     */
+
+    public PullParser(final byte[] data)
+    {
+        this(data, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The data to parse
+     * @param charset
+     *            The charset of the data
+     */
+
+    public PullParser(final byte[] data, final Charset charset)
+    {
+        this(data, 0, data.length, charset);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The data to parse
+     * @param off
+     *            The offset of the serialized data in the byte array
+     * @param len
+     *            The number of bytes of serialized data
+     * @param charset
+     *            The charset of the data
+     */
+
+    public PullParser(final byte[] data, final int off, final int len,
+        final Charset charset)
+    {
+        super();
+        this.charset = charset;
+        reset(data, off, len);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The input stream to read the data from
+     */
+
+    public PullParser(final InputStream stream)
+    {
+        this(stream, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The input stream to read the data from
+     * @param charset
+     *            The charset of the data
+     */
+
+    public PullParser(final InputStream stream, final Charset charset)
+    {
+        super();
+        this.data = new byte[BUFFER_SIZE];
+        this.charset = charset;
+        this.stream = stream;
+        this.channel = null;
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to read the data from
+     */
+
+    public PullParser(final ReadableByteChannel channel)
+    {
+        this(channel, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to read the data from
+     * @param charset
+     *            The charset of the data
+     */
+
+    public PullParser(final ReadableByteChannel channel, final Charset charset)
+    {
+        super();
+        this.data = new byte[BUFFER_SIZE];
+        this.charset = charset;
+        this.stream = null;
+        this.channel = channel;
+    }
+
+
+    /**
+     * Resets the parser to parse the specified data. The token state is
+     * cleared and a parser which was reading from a stream or channel parses
+     * the specified data instead. This allows reusing a single parser for
+     * many payloads.
+     *
+     * @param data
+     *            The data to parse
+     * @param off
+     *            The offset of the serialized data in the byte array
+     * @param len
+     *            The number of bytes of serialized data
+     */
+
+    public void reset(final byte[] data, final int off, final int len)
+    {
+        if (off < 0 || len < 0 || off + len > data.length)
+            throw new IndexOutOfBoundsException();
+        this.data = data;
+        this.pos = off;
+        this.end = off + len;
+        this.base = -off;
+        this.stream = null;
+        this.channel = null;
+        this.token = 0;
+        this.className = null;
+        this.depth = 0;
+        this.valueExpected = false;
+    }
+
+
+    /**
+     * Returns the charset of the data.
+     *
+     * @return The charset
+     */
+
+    public Charset getCharset()
+    {
+        return this.charset;
+    }
+
+
+    /**
+     * Checks if there are more tokens. When reading from a stream or channel
+     * this blocks until data is available or the end of the input has been
+     * reached.
+     *
+     * @return True if more tokens are available, false if not
+     */
+
+    public boolean hasNext()
+    {
+        return this.depth > 0 || require(1);
+    }
+
+
+    /**
+     * Reads the next token.
+     *
+     * @return The token
+     */
+
+    public int nextToken()
+    {
+        if (this.depth > 0 && !this.valueExpected)
+        {
+            if (this.remaining[this.depth - 1] == 0)
+            {
+                skip(1);
+                this.depth--;
+                this.token = END;
+                return END;
+            }
+            this.remaining[this.depth - 1]--;
+            readKey();
+            this.valueExpected = true;
+            this.token = KEY;
+            return KEY;
+        }
+        this.valueExpected = false;
+        this.token = readValue();
+        return this.token;
+    }
+
+
+    /**
+     * Skips the next value without decoding it. Must be called when a value
+     * is expected, which is at the top level or after a {@link #KEY} token.
+     * When called directly after a {@link #START_ARRAY} or
+     * {@link #START_OBJECT} token then the entries of this array or object
+     * are skipped and the current token becomes {@link #END}.
+     *
+     * @return True if the skipped value contains references, false if not
+     */
+
+    public boolean skipValue()
+    {
+        boolean references;
+        int i;
+
+        if (this.token == START_ARRAY || this.token == START_OBJECT)
+        {
+            references = false;
+            for (i = this.remaining[this.depth - 1]; i > 0; i--)
+            {
+                skipKey();
+                references |= skipData();
+            }
+            skip(1);
+            this.depth--;
+            this.token = END;
+            return references;
+        }
+        if (this.depth > 0 && !this.valueExpected)
+            throw new UnserializeException("No value expected at position "
+                + getPosition());
+        this.valueExpected = false;
+        this.token = 0;
+        return skipData();
+    }
+
+
+    /**
+     * Returns the current token.
+     *
+     * @return The current token. 0 if no token has been read yet
+     */
+
+    public int getToken()
+    {
+        return this.token;
+    }
+
+
+    /**
+     * Returns the number of open arrays and objects.
+     *
+     * @return The nesting depth
+     */
+
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+
+    /**
+     * Returns the value of an {@link #INT} token or an integer {@link #KEY}
+     * token as an int.
+     *
+     * @return The value
+     * @throws UnserializeException
+     *             When the value doesn't fit into an int
+     */
+
+    public int getInt()
+    {
+        if (this.number < Integer.MIN_VALUE || this.number > Integer.MAX_VALUE)
+            throw new UnserializeException("Number out of range: "
+                + this.number);
+        return (int) this.number;
+    }
+
+
+    /**
+     * Returns the value of an {@link #INT} token or an integer {@link #KEY}
+     * token.
+     *
+     * @return The value
+     */
+
+    public long getLong()
+    {
+        return this.number;
+    }
+
+
+    /**
+     * Returns the value of a {@link #DOUBLE} token.
+     *
+     * @return The value
+     */
+
+    public double getDouble()
+    {
+        return this.doubleValue;
+    }
+
+
+    /**
+     * Returns the value of a {@link #BOOL} token.
+     *
+     * @return The value
+     */
+
+    public boolean getBoolean()
+    {
+        return this.number != 0;
+    }
+
+
+    /**
+     * Returns the number of entries of a {@link #START_ARRAY} token or the
+     * number of properties of a {@link #START_OBJECT} token.
+     *
+     * @return The size
+     */
+
+    public int getSize()
+    {
+        return (int) this.number;
+    }
+
+
+    /**
+     * Returns the 1-based reference slot of a {@link #REFERENCE} token.
+     *
+     * @return The reference slot
+     */
+
+    public int getReference()
+    {
+        return (int) this.number;
+    }
+
+
+    /**
+     * Checks if the current {@link #KEY} token is an integer key. The key
+     * can then be read with {@link #getInt()}. Otherwise it is a string key
+     * which can be read with {@link #getString()}.
+     *
+     * @return True if integer key, false if string key
+     */
+
+    public boolean isIntegerKey()
+    {
+        return this.integerKey;
+    }
+
+
+    /**
+     * Returns the value of a {@link #STRING} token or a string {@link #KEY}
+     * token.
+     *
+     * @return The decoded string
+     */
+
+    public String getString()
+    {
+        return new String(this.data, this.stringOffset, this.stringLength,
+            this.charset);
+    }
+
+
+    /**
+     * Returns the length in bytes of the value of a {@link #STRING} token or
+     * a string {@link #KEY} token.
+     *
+     * @return The encoded length
+     */
+
+    public int getStringLength()
+    {
+        return this.stringLength;
+    }
+
+
+    /**
+     * Returns the offset of the current string in the data buffer.
+     *
+     * @return The string offset
+     */
+
+    int getStringOffset()
+    {
+        return this.stringOffset;
+    }
+
+
+    /**
+     * Returns the PHP class name of a {@link #START_OBJECT} token.
+     *
+     * @return The class name
+     */
+
+    public String getClassName()
+    {
+        return this.className;
+    }
+
+
+    /**
+     * Returns the current position in the input. Used for error messages.
+     *
+     * @return The current position in the input
+     */
+
+    public long getPosition()
+    {
+        return this.base + this.pos;
+    }
+
+
+    /**
+     * Checks if the data is completely in memory.
+     *
+     * @return True for byte array input, false for stream or channel input
+     */
+
+    boolean isInMemory()
+    {
+        return this.stream == null && this.channel == null;
+    }
+
+
+    /**
+     * Reads the next array key into the token fields.
+     */
+
+    private void readKey()
+    {
+        char type;
+
+        type = (char) next();
+        skip(1);
+        this.integerKey = type == 'i';
+        if (this.integerKey)
+            this.number = readLong(';');
+        else if (type == 's')
+            readStringToken();
+        else
+            throw new UnserializeException("Invalid key type " + type);
+    }
+
+
+    /**
+     * Reads the next value into the token fields.
+     *
+     * @return The token
+     */
+
+    private int readValue()
+    {
+        char type;
+
+        type = (char) next();
+        skip(1);
+        switch (type)
+        {
+            case 's':
+                readStringToken();
+                return STRING;
+
+            case 'i':
+                this.number = readLong(';');
+                return INT;
+
+            case 'd':
+                this.doubleValue = readDouble();
+                return DOUBLE;
+
+            case 'b':
+                this.number = next() == '1' ? 1 : 0;
+                skip(1);
+                return BOOL;
+
+            case 'N':
+                return NULL;
+
+            case 'R':
+            case 'r':
+                this.number = readInt(';');
+                return REFERENCE;
+
+            case 'a':
+                this.number = readInt(':');
+                skip(1);
+                open();
+                return START_ARRAY;
+
+            case 'O':
+                this.className = readString();
+                skip(1);
+                this.number = readInt(':');
+                skip(1);
+                open();
+                return START_OBJECT;
+
+            default:
+                throw new UnserializeException(
+                    "Unable to unserialize unknown type " + type);
+        }
+    }
+
+
+    /**
+     * Opens a new array or object with the size of the current token.
+     */
+
+    private void open()
+    {
+        if (this.number < 0)
+            throw new UnserializeException("Invalid size " + this.number);
+        if (this.depth == this.remaining.length)
+            this.remaining = Arrays.copyOf(this.remaining, this.depth * 2);
+        this.remaining[this.depth++] = (int) this.number;
+    }
+
+
+    /**
+     * Reads a length-prefixed quoted string (<length>:"<string>") followed
+     * by a terminator into the token fields and moves the data pointer
+     * behind the terminator. The string stays in the buffer until the next
+     * token is read.
+     */
+
+    private void readStringToken()
+    {
+        int length;
+
+        length = readInt(':');
+        if (length < 0 || (!require(length + 3) && !require(length + 2)))
+            throw new UnserializeException("Unexpected end of data");
+        this.stringOffset = this.pos + 1;
+        this.stringLength = length;
+        this.pos = Math.min(this.pos + length + 3, this.end);
+    }
+
+
+    /**
+     * Reads more data from the stream or channel into the buffer. Already
+     * consumed data is discarded and the buffer is enlarged when it is full.
+     *
+     * @return False if no more data is available, true if data was read
+     */
+
+    private boolean fill()
+    {
+        byte[] newData;
+        int read;
+
+        if (this.stream == null && this.channel == null) return false;
+
+        // Discard consumed data and enlarge the buffer if it is still full
+        if (this.pos > 0)
+        {
+            System.arraycopy(this.data, this.pos, this.data, 0, this.end
+                - this.pos);
+            this.base += this.pos;
+            this.end -= this.pos;
+            this.pos = 0;
+        }
+        if (this.end == this.data.length)
+        {
+            newData = new byte[this.data.length * 2];
+            System.arraycopy(this.data, 0, newData, 0, this.end);
+            this.data = newData;
+        }
+
+        try
+        {
+            do
+            {
+                if (this.stream != null)
+                {
+                    read = this.stream.read(this.data, this.end,
+                        this.data.length - this.end);
+                }
+                else
+                {
+                    read = this.channel.read(ByteBuffer.wrap(this.data,
+                        this.end, this.data.length - this.end));
+                }
+            }
+            while (read == 0);
+        }
+        catch (final IOException e)
+        {
+            throw new UnserializeException("Unable to read serialized data", e);
+        }
+        if (read < 0) return false;
+        this.end += read;
+        return true;
+    }
+
+
+    /**
+     * Makes sure the specified number of bytes is available in the buffer
+     * starting at the current position.
+     *
+     * @param length
+     *            The number of required bytes
+     * @return False if the end of the data was reached before, true if the
+     *         bytes are available
+     */
+
+    boolean require(final int length)
+    {
+        while (this.end - this.pos < length)
+        {
+            if (!fill()) return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the next byte and moves the data pointer behind it.
+     *
+     * @return The next byte
+     */
+
+    byte next()
+    {
+        if (!require(1))
+            throw new UnserializeException("Unexpected end of data");
+        return this.data[this.pos++];
+    }
+
+
+    /**
+     * Returns the next byte without moving the data pointer.
+     *
+     * @return The next byte
+     */
+
+    byte peek()
+    {
+        if (!require(1))
+            throw new UnserializeException("Unexpected end of data");
+        return this.data[this.pos];
+    }
+
+
+    /**
+     * Skips the specified number of separator bytes. Missing separators at
+     * the end of the data are tolerated.
+     *
+     * @param length
+     *            The number of bytes to skip
+     */
+
+    void skip(final int length)
+    {
+        require(length);
+        this.pos = Math.min(this.pos + length, this.end);
+    }
+
+
+    /**
+     * Searches the specified delimiter starting at the current position and
+     * makes sure all data up to the delimiter is available in the buffer.
+     *
+     * @param delimiter
+     *            The delimiter to search
+     * @return The index of the delimiter in the buffer
+     */
+
+    int find(final char delimiter)
+    {
+        int length;
+
+        length = 0;
+        while (true)
+        {
+            while (this.pos + length < this.end)
+            {
+                if (this.data[this.pos + length] == delimiter)
+                    return this.pos + length;
+                length++;
+            }
+            if (!fill())
+                throw new UnserializeException("Unexpected end of data");
+        }
+    }
+
+
+    /**
+     * Parses the decimal integer at the current position up to the specified
+     * delimiter directly from the data and moves the data pointer behind the
+     * delimiter.
+     *
+     * @param delimiter
+     *            The delimiter terminating the integer
+     * @return The parsed integer
+     */
+
+    int readInt(final char delimiter)
+    {
+        long value;
+
+        value = readLong(delimiter);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new UnserializeException("Number out of range: " + value);
+        return (int) value;
+    }
+
+
+    /**
+     * Parses the decimal long integer at the current position up to the
+     * specified delimiter directly from the data and moves the data pointer
+     * behind the delimiter.
+     *
+     * @param delimiter
+     *            The delimiter terminating the integer
+     * @return The parsed integer
+     */
+
+    long readLong(final char delimiter)
+    {
+        int pos, end;
+        boolean negative;
+        long value, limit;
+        int digit;
+        byte b;
+
+        end = find(delimiter);
+        pos = this.pos;
+        negative = false;
+        if (pos < end && (this.data[pos] == '-' || this.data[pos] == '+'))
+        {
+            negative = this.data[pos] == '-';
+            pos++;
+        }
+        if (pos == end)
+            throw new UnserializeException("Missing number at position "
+                + getPosition());
+
+        // Accumulate negatively to cover the range down to Long.MIN_VALUE
+        limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        value = 0;
+        while (pos < end)
+        {
+            b = this.data[pos];
+            if (b < '0' || b > '9')
+                throw new UnserializeException("Invalid number at position "
+                    + getPosition());
+            digit = b - '0';
+            if (value < limit / 10 || value * 10 < limit + digit)
+                throw new UnserializeException("Number out of range at "
+                    + "position " + getPosition());
+            value = value * 10 - digit;
+            pos++;
+        }
+        this.pos = end + 1;
+        return negative ? value : -value;
+    }
+
+
+    /**
+     * Parses the double at the current position up to the next semicolon
+     * and moves the data pointer behind the semicolon. Plain decimal numbers
+     * with up to 15 significant digits are parsed directly from the data. All
+     * other forms (Exponents, INF, NAN, long numbers) are parsed with
+     * Double.parseDouble.
+     *
+     * @return The parsed double
+     */
+
+    double readDouble()
+    {
+        int pos, end;
+        boolean negative;
+        long mantissa;
+        int digits, scale;
+        boolean fraction, empty;
+        double value;
+        byte b;
+
+        end = find(';');
+        pos = this.pos;
+        negative = false;
+        if (pos < end && (this.data[pos] == '-' || this.data[pos] == '+'))
+        {
+            negative = this.data[pos] == '-';
+            pos++;
+        }
+        mantissa = 0;
+        digits = 0;
+        scale = 0;
+        fraction = false;
+        empty = true;
+        while (pos < end)
+        {
+            b = this.data[pos];
+            if (b >= '0' && b <= '9')
+            {
+                empty = false;
+                if (mantissa != 0 || b != '0') digits++;
+                if (digits > 15) return parseDouble(end);
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) scale++;
+            }
+            else if (b == '.' && !fraction)
+            {
+                fraction = true;
+            }
+            else
+            {
+                return parseDouble(end);
+            }
+            pos++;
+        }
+        if (empty || scale > 22) return parseDouble(end);
+        this.pos = end + 1;
+
+        // Both values are exactly representable so a single division is
+        // correctly rounded
+        value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+
+    /**
+     * Parses the double at the current position up to the specified end
+     * with Double.parseDouble and moves the data pointer behind the end. The
+     * PHP specific forms INF, -INF and NAN are supported.
+     *
+     * @param end
+     *            The index of the semicolon terminating the double
+     * @return The parsed double
+     */
+
+    private double parseDouble(final int end)
+    {
+        String token;
+
+        token = new String(this.data, this.pos, end - this.pos, ASCII);
+        this.pos = end + 1;
+        if (token.equals("INF")) return Double.POSITIVE_INFINITY;
+        if (token.equals("-INF")) return Double.NEGATIVE_INFINITY;
+        if (token.equals("NAN")) return Double.NaN;
+        try
+        {
+            return Double.parseDouble(token);
+        }
+        catch (final NumberFormatException e)
+        {
+            throw new UnserializeException("Invalid double " + token, e);
+        }
+    }
+
+
+    /**
+     * Reads a length-prefixed quoted string (<length>:"<string>") and moves
+     * the data pointer behind the closing quote.
+     *
+     * @return The string
+     */
+
+    String readString()
+    {
+        int length;
+        String result;
+
+        length = readInt(':');
+        skip(1);
+        if (length < 0 || !require(length))
+            throw new UnserializeException("Unexpected end of data");
+        result = new String(this.data, this.pos, length, this.charset);
+        this.pos += length;
+        skip(1);
+        return result;
+    }
+
+
+    /**
+     * Skips a length-prefixed quoted string (<length>:"<string>") and moves
+     * the data pointer behind the closing quote.
+     */
+
+    void skipString()
+    {
+        int length;
+
+        length = readInt(':');
+        if (length < 0 || !require(length + 2))
+            throw new UnserializeException("Unexpected end of data");
+        this.pos += length + 2;
+    }
+
+
+    /**
+     * Skips the next array key or property name in the data and moves the
+     * data pointer behind it.
+     */
+
+    void skipKey()
+    {
+        char type;
+
+        type = (char) next();
+        skip(1);
+        if (type == 's')
+        {
+            skipString();
+            skip(1);
+        }
+        else if (type == 'i')
+            this.pos = find(';') + 1;
+        else
+            throw new UnserializeException("Invalid key type " + type);
+    }
+
+
+    /**
+     * Skips the next value in the data by the declared lengths and moves
+     * the data pointer behind it. The token state is not changed.
+     *
+     * @return True if the value contains references, false if not
+     */
+
+    boolean skipData()
+    {
+        char type;
+
+        type = (char) next();
+        skip(1);
+        switch (type)
+        {
+            case 's':
+                skipString();
+                skip(1);
+                return false;
+
+            case 'N':
+                // The terminator has already been skipped
+                return false;
+
+            case 'i':
+            case 'd':
+            case 'b':
+                this.pos = find(';') + 1;
+                return false;
+
+            case 'R':
+            case 'r':
+                this.pos = find(';') + 1;
+                return true;
+
+            case 'O':
+                skipString();
+                skip(1);
+                return skipEntries();
+
+            case 'a':
+                return skipEntries();
+
+            default:
+                throw new UnserializeException(
+                    "Unable to unserialize unknown type " + type);
+        }
+    }
+
+
+    /**
+     * Skips the entries of an array or the properties of an object including
+     * the closing brace. The data pointer must be positioned at the number
+     * of entries.
+     *
+     * @return True if the skipped entries contain references, false if not
+     */
+
+    private boolean skipEntries()
+    {
+        boolean references;
+        int max;
+        int i;
+
+        max = readInt(':');
+        skip(1);
+        references = false;
+        for (i = 0; i < max; i++)
+        {
+            skipKey();
+            references |= skipData();
+        }
+        skip(1);
+        return references;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.reflect.Field;
+
+import de.ailis.pherialize.exceptions.SerializeException;
+import de.ailis.pherialize.exceptions.UnserializeException;
+
+
+/**
+ * Field accessor using the reflection API.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+final class ReflectionFieldAccessor extends FieldAccessor
+{
+    /** The accessible field */
+    private final Field field;
+
+
+    /**
+     * Constructor
+     *
+     * @param field
+     *            The accessible field
+     */
+
+    ReflectionFieldAccessor(final Field field)
+    {
+        super();
+        this.field = field;
+    }
+
+
+    /**
+     * Creates the exception thrown when the field can't be read.
+     *
+     * @param e
+     *            The root cause
+     * @return The exception
+     */
+
+    private SerializeException error(final IllegalAccessException e)
+    {
+        return new SerializeException("Unable to read field "
+            + this.field.getName() + " of "
+            + this.field.getDeclaringClass().getName(), e);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#get(java.lang.Object)
+     */
+
+    @Override
+    Object get(final Object object)
+    {
+        try
+        {
+            return this.field.get(object);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getInt(java.lang.Object)
+     */
+
+    @Override
+    int getInt(final Object object)
+    {
+        try
+        {
+            return this.field.getInt(object);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getLong(java.lang.Object)
+     */
+
+    @Override
+    long getLong(final Object object)
+    {
+        try
+        {
+            return this.field.getLong(object);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getDouble(java.lang.Object)
+     */
+
+    @Override
+    double getDouble(final Object object)
+    {
+        try
+        {
+            return this.field.getDouble(object);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#getBoolean(java.lang.Object)
+     */
+
+    @Override
+    boolean getBoolean(final Object object)
+    {
+        try
+        {
+            return this.field.getBoolean(object);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw error(e);
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.FieldAccessor#set(java.lang.Object,
+     *      java.lang.Object)
+     */
+
+    @Override
+    void set(final Object object, final Object value)
+    {
+        try
+        {
+            this.field.set(object, value);
+        }
+        catch (final IllegalAccessException e)
+        {
+            throw new UnserializeException("Unable to write field "
+                + this.field.getName() + " of "
+                + this.field.getDeclaringClass().getName(), e);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import de.ailis.pherialize.exceptions.SerializeException;
+
+
+/**
+ * A low-level streaming writer for the PHP serialize format and the
+ * counterpart of the {@link PullParser}. Arrays and objects are written with
+ * {@link #beginArray(int)} or {@link #beginObject(String, int)} followed by
+ * a {@link #key(String)} and a value call for each entry and a final
+ * {@link #end()}. The number of entries must be known in advance because it
+ * is part of the array header.
+ *
+ * The data is written directly into the output buffer so large data sets
+ * like database result sets can be serialized without building an object
+ * graph first. The output is byte-identical to the output of the
+ * {@link Serializer} for the same data. References are never written.
+ *
+ * When writing to a stream or channel the data is buffered and written
+ * incrementally. {@link #flush()} must be called after the last value. IO
+ * errors are wrapped in a SerializeException.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class SerializedWriter
+{
+    /** The output to write to */
+    private final Output output;
+
+    /** The number of remaining entries of the open arrays and objects */
+    private int[] remaining = new int[16];
+
+    /** The number of open arrays and objects */
+    private int depth;
+
+    /** If a key has been written and the value is expected */
+    private boolean valueExpected;
+
+
+    /**
+     * Constructor for a writer building a string. The string can be
+     * retrieved with {@link #toString()}.
+     */
+
+    public SerializedWriter()
+    {
+        this(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor for a writer building a string. The string can be
+     * retrieved with {@link #toString()}.
+     *
+     * @param charset
+     *            The charset used to calculate the string lengths
+     */
+
+    public SerializedWriter(final Charset charset)
+    {
+        super();
+        this.output = new StringOutput(charset);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The output stream to write the UTF-8 encoded data to
+     */
+
+    public SerializedWriter(final OutputStream stream)
+    {
+        this(stream, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The output stream to write the data to
+     * @param charset
+     *            The charset of the written data
+     */
+
+    public SerializedWriter(final OutputStream stream, final Charset charset)
+    {
+        super();
+        this.output = new StreamOutput(stream, charset);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to write the UTF-8 encoded data to
+     */
+
+    public SerializedWriter(final WritableByteChannel channel)
+    {
+        this(channel, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to write the data to
+     * @param charset
+     *            The charset of the written data
+     */
+
+    public SerializedWriter(final WritableByteChannel channel,
+        final Charset charset)
+    {
+        super();
+        this.output = new StreamOutput(channel, charset);
+    }
+
+
+    /**
+     * Starts a new array.
+     *
+     * @param size
+     *            The number of entries
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter beginArray(final int size)
+    {
+        beginValue();
+        open(size);
+        this.output.append("a:");
+        this.output.append(size);
+        this.output.append(":{");
+        return this;
+    }
+
+
+    /**
+     * Starts a new PHP object. Each property is written with
+     * {@link #key(String)} and a value call.
+     *
+     * @param className
+     *            The PHP class name
+     * @param fieldCount
+     *            The number of properties
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter beginObject(final String className,
+        final int fieldCount)
+    {
+        beginValue();
+        open(fieldCount);
+        this.output.append("O:");
+        this.output.appendClassName(className);
+        this.output.append(':');
+        this.output.append(fieldCount);
+        this.output.append(":{");
+        return this;
+    }
+
+
+    /**
+     * Writes an integer array key.
+     *
+     * @param key
+     *            The key
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter key(final int key)
+    {
+        beginKey();
+        this.output.append("i:");
+        this.output.append(key);
+        this.output.append(';');
+        return this;
+    }
+
+
+    /**
+     * Writes a string array key or property name.
+     *
+     * @param key
+     *            The key
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter key(final String key)
+    {
+        beginKey();
+        this.output.appendString(key);
+        return this;
+    }
+
+
+    /**
+     * Writes an integer value. Like in the {@link Serializer} numbers which
+     * don't fit into a 32 bit integer are written as doubles.
+     *
+     * @param value
+     *            The value
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter value(final long value)
+    {
+        beginValue();
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+            this.output.append("i:");
+        else
+            this.output.append("d:");
+        this.output.append(value);
+        this.output.append(';');
+        return this;
+    }
+
+
+    /**
+     * Writes a double value.
+     *
+     * @param value
+     *            The value
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter value(final double value)
+    {
+        beginValue();
+        this.output.append("d:");
+        this.output.append(value);
+        this.output.append(';');
+        return this;
+    }
+
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value
+     *            The value
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter value(final boolean value)
+    {
+        beginValue();
+        this.output.append(value ? "b:1;" : "b:0;");
+        return this;
+    }
+
+
+    /**
+     * Writes a string value. Null is written as a null value.
+     *
+     * @param value
+     *            The value. May be null
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter value(final String value)
+    {
+        if (value == null) return nullValue();
+        beginValue();
+        this.output.appendString(value);
+        return this;
+    }
+
+
+    /**
+     * Writes a null value.
+     *
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter nullValue()
+    {
+        beginValue();
+        this.output.append("N;");
+        return this;
+    }
+
+
+    /**
+     * Ends the current array or object.
+     *
+     * @return This writer for chaining
+     */
+
+    public SerializedWriter end()
+    {
+        if (this.depth == 0)
+            throw new SerializeException("No open array or object");
+        if (this.valueExpected || this.remaining[this.depth - 1] != 0)
+            throw new SerializeException("Array or object is not complete");
+        this.output.append('}');
+        this.depth--;
+        return this;
+    }
+
+
+    /**
+     * Returns the number of open arrays and objects.
+     *
+     * @return The nesting depth
+     */
+
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+
+    /**
+     * Writes all buffered data to the stream or channel. The stream is not
+     * flushed itself.
+     */
+
+    public void flush()
+    {
+        if (this.output instanceof StreamOutput)
+            ((StreamOutput) this.output).flush();
+    }
+
+
+    /**
+     * Returns the serialized data written so far when building a string.
+     *
+     * @return The serialized data
+     */
+
+    @Override
+    public String toString()
+    {
+        return this.output.toString();
+    }
+
+
+    /**
+     * Checks if a key is expected and counts the entry.
+     */
+
+    private void beginKey()
+    {
+        if (this.depth == 0 || this.valueExpected)
+            throw new SerializeException("No key expected");
+        if (this.remaining[this.depth - 1] == 0)
+            throw new SerializeException("Too many entries");
+        this.remaining[this.depth - 1]--;
+        this.valueExpected = true;
+    }
+
+
+    /**
+     * Checks if a value is expected.
+     */
+
+    private void beginValue()
+    {
+        if (this.depth > 0 && !this.valueExpected)
+            throw new SerializeException("Key expected");
+        this.valueExpected = false;
+    }
+
+
+    /**
+     * Opens a new array or object.
+     *
+     * @param size
+     *            The number of entries
+     */
+
+    private void open(final int size)
+    {
+        if (size < 0) throw new SerializeException("Invalid size " + size);
+        if (this.depth == this.remaining.length)
+            this.remaining = Arrays.copyOf(this.remaining, this.depth * 2);
+        this.remaining[this.depth++] = size;
+    }
+}
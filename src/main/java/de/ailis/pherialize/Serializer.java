@@ -23,15 +23,20 @@
 
 package de.ailis.pherialize;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.ailis.pherialize.exceptions.SerializeException;
 
@@ -39,17 +44,50 @@ import de.ailis.pherialize.exceptions.SerializeException;
 /**
  * Serializes Java objects in a PHP serializer format string.
  *
+ * A serializer can be reused for any number of objects. Each object has its
+ * own reference history and the output buffer is kept between calls. A
+ * serializer is not thread-safe, so it must not be used by multiple threads
+ * at the same time.
+ *
  * @author Klaus Reimer (k.reimer@iplabs.de)
  * @version $Revision$
  */
 
 public class Serializer
 {
+    /** The minimum number of root elements serialized by a single task */
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    /** The number of chunks per pool thread for balancing the load */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** Histories larger than this are released when the serializer is reset */
+    private static final int MAX_RETAINED_HISTORY = 64 * 1024;
+
     /** The original charset of the input data. */
     private final Charset charset;
 
     /** The object history for resolving references */
-    private final List<Object> history;
+    private List<Object> history;
+
+    /**
+     * Maps referenceable objects in the history to the index of their first
+     * occurrence so references can be resolved without scanning the history.
+     */
+    private Map<Object, Integer> historyIndex;
+
+    /** The reusable output used for serializing into strings */
+    private final StringOutput stringOutput;
+
+    /**
+     * The output positions and history indices of the references written
+     * while serializing a chunk of a parallel serialization. Null when not
+     * serializing a chunk.
+     */
+    private int[] references;
+
+    /** The number of used entries in the references array */
+    private int referencesSize;
 
 
     /**
@@ -58,7 +96,7 @@ public class Serializer
 
     public Serializer()
     {
-        this(Charset.forName("UTF-8"));
+        this(StandardCharsets.UTF_8);
     }
 
 
@@ -71,6 +109,55 @@ public class Serializer
         super();
         this.charset = charset;
         this.history = new ArrayList<Object>();
+        this.historyIndex = new IdentityHashMap<Object, Integer>();
+        this.stringOutput = new StringOutput(charset);
+    }
+
+
+    /**
+     * Returns the charset of the serialized data.
+     *
+     * @return The charset
+     */
+
+    public Charset getCharset()
+    {
+        return this.charset;
+    }
+
+
+    /**
+     * Resets the serializer. The reference history of the last serialized
+     * object is cleared so the serializer no longer holds on to the object.
+     * The buffers are kept for the next serialization unless they have grown
+     * very large.
+     */
+
+    public void reset()
+    {
+        clearHistory();
+        this.stringOutput.reset();
+    }
+
+
+    /**
+     * Clears the reference history. A very large history is released
+     * instead so a single huge serialization does not pin its memory
+     * forever.
+     */
+
+    private void clearHistory()
+    {
+        if (this.history.size() > MAX_RETAINED_HISTORY)
+        {
+            this.history = new ArrayList<Object>();
+            this.historyIndex = new IdentityHashMap<Object, Integer>();
+        }
+        else
+        {
+            this.history.clear();
+            this.historyIndex.clear();
+        }
     }
 
 
@@ -84,11 +171,297 @@ public class Serializer
 
     public String serialize(final Object object)
     {
-        StringBuffer buffer;
+        reset();
+        serializeObject(object, this.stringOutput);
+        return this.stringOutput.toString();
+    }
+
+
+    /**
+     * Serializes the specified object using the specified pool for large
+     * arrays, collections and maps. The elements of such a root container
+     * are split into chunks which are serialized in parallel and then
+     * concatenated in order. Smaller roots and all other objects are
+     * serialized sequentially.
+     *
+     * Each chunk has its own reference history. References within a chunk
+     * and references to the root container are renumbered to match the
+     * concatenated data, but an object shared by elements of different
+     * chunks is serialized once per chunk instead of being written as a
+     * reference. The object graph is read without synchronization so it must
+     * not be modified during serialization. This includes lazily
+     * unserialized arrays which are loaded on first access.
+     *
+     * @param object
+     *            The object
+     * @param pool
+     *            The pool to serialize the chunks on
+     * @return The serialized data
+     */
+
+    public String serialize(final Object object, final ForkJoinPool pool)
+    {
+        reset();
+        serializeParallel(object, this.stringOutput, pool);
+        return this.stringOutput.toString();
+    }
+
+
+    /**
+     * Serializes the specified object using the specified pool for large
+     * arrays, collections and maps and writes the encoded data to the
+     * specified output stream. The chunks are written to the stream in order
+     * as soon as they are complete. The stream is neither flushed nor
+     * closed.
+     *
+     * @param object
+     *            The object
+     * @param stream
+     *            The output stream to write the serialized data to
+     * @param pool
+     *            The pool to serialize the chunks on
+     * @throws IOException
+     *             When writing to the stream fails
+     * @see #serialize(Object, ForkJoinPool)
+     */
+
+    public void serialize(final Object object, final OutputStream stream,
+        final ForkJoinPool pool) throws IOException
+    {
+        serialize(object, new StreamOutput(stream, this.charset), pool);
+    }
+
 
-        buffer = new StringBuffer();
-        serializeObject(object, buffer);
-        return buffer.toString();
+    /**
+     * Serializes the specified object and writes the encoded data to the
+     * specified output stream. The data is written incrementally through a
+     * small buffer so the serialized data never exists completely in memory.
+     * The stream is neither flushed nor closed.
+     *
+     * @param object
+     *            The object
+     * @param stream
+     *            The output stream to write the serialized data to
+     * @throws IOException
+     *             When writing to the stream fails
+     */
+
+    public void serialize(final Object object, final OutputStream stream)
+        throws IOException
+    {
+        serialize(object, new StreamOutput(stream, this.charset), null);
+    }
+
+
+    /**
+     * Serializes the specified object and writes the encoded data to the
+     * specified channel. The data is written incrementally through a small
+     * buffer so the serialized data never exists completely in memory. The
+     * channel is not closed.
+     *
+     * @param object
+     *            The object
+     * @param channel
+     *            The channel to write the serialized data to
+     * @throws IOException
+     *             When writing to the channel fails
+     */
+
+    public void serialize(final Object object,
+        final WritableByteChannel channel) throws IOException
+    {
+        serialize(object, new StreamOutput(channel, this.charset), null);
+    }
+
+
+    /**
+     * Serializes the specified object into the specified stream output and
+     * flushes the output afterwards.
+     *
+     * @param object
+     *            The object
+     * @param output
+     *            The stream output
+     * @param pool
+     *            The pool for serializing in parallel. Null to serialize
+     *            sequentially
+     * @throws IOException
+     *             When writing the serialized data fails
+     */
+
+    private void serialize(final Object object, final StreamOutput output,
+        final ForkJoinPool pool) throws IOException
+    {
+        clearHistory();
+        try
+        {
+            if (pool == null)
+                serializeObject(object, output);
+            else
+                serializeParallel(object, output, pool);
+            output.flush();
+        }
+        catch (final SerializeException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Serializes the specified object in parallel chunks if it is a large
+     * array, collection or map and sequentially otherwise.
+     *
+     * @param object
+     *            The object to serialize
+     * @param output
+     *            The output to append serialized data to
+     * @param pool
+     *            The pool to serialize the chunks on
+     */
+
+    private void serializeParallel(final Object object, final Output output,
+        final ForkJoinPool pool)
+    {
+        Object root;
+        Object[] elements;
+        Chunk[] chunks;
+        int chunkSize, count, offset, i;
+        int tasks;
+
+        // Mixed arrays are serialized like their values anyway
+        root = object;
+        if (root instanceof Mixed && ((Mixed) root).isArray())
+            root = ((Mixed) root).getValue();
+
+        if (root instanceof Object[])
+            elements = (Object[]) root;
+        else if (root instanceof Collection<?>)
+            elements = ((Collection<?>) root).toArray();
+        else if (root instanceof Map<?, ?> && !(root instanceof MixedObject))
+            elements = ((Map<?, ?>) root).entrySet().toArray();
+        else
+            elements = null;
+
+        if (elements == null || pool.getParallelism() < 2)
+        {
+            serializeObject(object, output);
+            return;
+        }
+
+        tasks = pool.getParallelism() * CHUNKS_PER_THREAD;
+        chunkSize = Math.max(MIN_CHUNK_SIZE, (elements.length + tasks - 1)
+            / tasks);
+        if (elements.length <= chunkSize)
+        {
+            serializeObject(object, output);
+            return;
+        }
+
+        count = (elements.length + chunkSize - 1) / chunkSize;
+        chunks = new Chunk[count];
+        for (i = 0; i < count; i++)
+        {
+            chunks[i] = new Chunk(this.charset, root, elements, i * chunkSize,
+                Math.min(elements.length, (i + 1) * chunkSize));
+            pool.execute(chunks[i]);
+        }
+
+        try
+        {
+            output.append("a:");
+            output.append(elements.length);
+            output.append(":{");
+            offset = 0;
+            for (i = 0; i < count; i++)
+            {
+                chunks[i].join();
+                writeChunk(chunks[i], offset, output);
+                offset += chunks[i].slots;
+
+                // Release the chunk data as soon as it is written
+                chunks[i] = null;
+            }
+            output.append('}');
+        }
+        finally
+        {
+            for (i = 0; i < count; i++)
+                if (chunks[i] != null) chunks[i].cancel(false);
+        }
+    }
+
+
+    /**
+     * Serializes the elements of the specified chunk. The root container is
+     * put into the history first so references to it keep their slot.
+     *
+     * @param chunk
+     *            The chunk to serialize
+     */
+
+    private void serializeChunk(final Chunk chunk)
+    {
+        Map.Entry<?, ?> entry;
+        int i;
+
+        this.references = new int[16];
+        addHistory(chunk.root);
+        for (i = chunk.from; i < chunk.to; i++)
+        {
+            if (chunk.root instanceof Map<?, ?>)
+            {
+                entry = (Map.Entry<?, ?>) chunk.elements[i];
+                serializeObject(entry.getKey(), this.stringOutput, false);
+                removeLastHistory();
+                serializeObject(entry.getValue(), this.stringOutput);
+            }
+            else
+            {
+                serializeObject(Integer.valueOf(i), this.stringOutput, false);
+                removeLastHistory();
+                serializeObject(chunk.elements[i], this.stringOutput);
+            }
+        }
+        chunk.text = this.stringOutput.toString();
+        chunk.references = this.references;
+        chunk.referencesSize = this.referencesSize;
+        chunk.slots = this.history.size() - 1;
+    }
+
+
+    /**
+     * Writes the serialized data of the specified chunk to the specified
+     * output. References to objects of the chunk are renumbered by the
+     * specified offset. References to the root container are kept.
+     *
+     * @param chunk
+     *            The serialized chunk
+     * @param offset
+     *            The number of reference slots of the preceding chunks
+     * @param output
+     *            The output to append serialized data to
+     */
+
+    private static void writeChunk(final Chunk chunk, final int offset,
+        final Output output)
+    {
+        String text;
+        int i, start, index, last;
+
+        text = chunk.text;
+        last = 0;
+        for (i = 0; i < chunk.referencesSize; i += 2)
+        {
+            start = chunk.references[i];
+            index = chunk.references[i + 1];
+            output.appendText(text.substring(last, start));
+            output.append((index == 0 ? 0 : index + offset) + 1);
+            last = start + Output.countDigits(index + 1);
+        }
+        output.appendText(last == 0 ? text : text.substring(last));
     }
 
 
@@ -99,13 +472,13 @@ public class Serializer
      *
      * @param object
      *            The object to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeObject(final Object object, final StringBuffer buffer)
+    private void serializeObject(final Object object, final Output output)
     {
-        serializeObject(object, buffer, true);
+        serializeObject(object, output, true);
     }
 
 
@@ -117,82 +490,87 @@ public class Serializer
      *
      * @param object
      *            The object to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      * @param allowReference
      *            If reference is allowed for this object
      */
 
-    private void serializeObject(final Object object, final StringBuffer buffer,
+    private void serializeObject(final Object object, final Output output,
         final boolean allowReference)
     {
         if (object == null)
         {
-            serializeNull(buffer);
+            serializeNull(output);
         }
-        else if (allowReference && serializeReference(object, buffer))
+        else if (allowReference && serializeReference(object, output))
         {
             return;
         }
         else if (object instanceof String)
         {
-            serializeString((String) object, buffer);
+            serializeString((String) object, output);
         }
         else if (object instanceof Character)
         {
-            serializeCharacter((Character) object, buffer);
+            serializeCharacter((Character) object, output);
         }
         else if (object instanceof Integer)
         {
-            serializeInteger(((Integer) object).intValue(), buffer);
+            serializeInteger(((Integer) object).intValue(), output);
         }
         else if (object instanceof Short)
         {
-            serializeInteger(((Short) object).intValue(), buffer);
+            serializeInteger(((Short) object).intValue(), output);
         }
         else if (object instanceof Byte)
         {
-            serializeInteger(((Byte) object).intValue(), buffer);
+            serializeInteger(((Byte) object).intValue(), output);
         }
         else if (object instanceof Long)
         {
-            serializeLong(((Long) object).longValue(), buffer);
+            serializeLong(((Long) object).longValue(), output);
         }
         else if (object instanceof Double)
         {
-            serializeDouble(((Double) object).doubleValue(), buffer);
+            serializeDouble(((Double) object).doubleValue(), output);
         }
         else if (object instanceof Float)
         {
-            serializeDouble(((Float) object).doubleValue(), buffer);
+            serializeDouble(((Float) object).doubleValue(), output);
         }
         else if (object instanceof Boolean)
         {
-            serializeBoolean((Boolean) object, buffer);
+            serializeBoolean(((Boolean) object).booleanValue(), output);
         }
         else if (object instanceof Mixed)
         {
-            serializeMixed((Mixed) object, buffer);
+            serializeMixed((Mixed) object, output);
             return;
         }
         else if (object instanceof Object[])
         {
-            serializeArray((Object[]) object, buffer);
+            serializeArray((Object[]) object, output);
             return;
         }
         else if (object instanceof Collection<?>)
         {
-            serializeCollection((Collection<?>) object, buffer);
+            serializeCollection((Collection<?>) object, output);
+            return;
+        }
+        else if (object instanceof MixedObject)
+        {
+            serializeMixedObject((MixedObject) object, output);
             return;
         }
         else if (object instanceof Map<?, ?>)
         {
-            serializeMap((Map<?, ?>) object, buffer);
+            serializeMap((Map<?, ?>) object, output);
             return;
         }
         else if (object instanceof Serializable)
         {
-            serializeSerializable((Serializable) object, buffer);
+            serializeSerializable((Serializable) object, output);
             return;
         }
         else
@@ -201,7 +579,7 @@ public class Serializer
                 + object.getClass().getName());
         }
 
-        this.history.add(object);
+        addHistory(object);
     }
 
 
@@ -212,42 +590,109 @@ public class Serializer
      *
      * @param object
      *            The object to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      * @return If a reference was serialized or not
      */
 
-    private boolean serializeReference(final Object object, final StringBuffer buffer)
+    private boolean serializeReference(final Object object, final Output output)
     {
-        Iterator<?> iterator;
-        int index;
-        boolean isReference;
+        Integer index;
 
         // Don't allow references for simple types because here PHP and
         // Java are VERY different and the best way it to simply disallow
         // References for these types
-        if (object instanceof Number || object instanceof Boolean ||
-            object instanceof String)
+        if (!isReferenceable(object)) return false;
+
+        index = this.historyIndex.get(object);
+        if (index == null) return false;
+
+        output.append("R:");
+        if (this.references != null) addReference(index.intValue());
+        output.append(index.intValue() + 1);
+        output.append(';');
+        return true;
+    }
+
+
+    /**
+     * Records the position of a reference to the specified history index
+     * which is about to be written into the string output of a chunk.
+     *
+     * @param index
+     *            The referenced history index
+     */
+
+    private void addReference(final int index)
+    {
+        int[] newReferences;
+
+        if (this.referencesSize == this.references.length)
         {
-            return false;
+            newReferences = new int[this.referencesSize * 2];
+            System.arraycopy(this.references, 0, newReferences, 0,
+                this.referencesSize);
+            this.references = newReferences;
         }
+        this.references[this.referencesSize++] = this.stringOutput.length();
+        this.references[this.referencesSize++] = index;
+    }
 
-        iterator = this.history.iterator();
-        index = 0;
-        isReference = false;
-        while (iterator.hasNext())
+
+    /**
+     * Checks if the specified object can be serialized as a reference.
+     *
+     * @param object
+     *            The object to check
+     * @return If object can be serialized as a reference
+     */
+
+    private static boolean isReferenceable(final Object object)
+    {
+        return object != null && !(object instanceof Number
+            || object instanceof Boolean || object instanceof String);
+    }
+
+
+    /**
+     * Adds the specified object to the history. The object is also indexed
+     * for reference lookups if it is the first occurrence of a referenceable
+     * object.
+     *
+     * @param object
+     *            The object to add
+     */
+
+    private void addHistory(final Object object)
+    {
+        if (isReferenceable(object) && !this.historyIndex.containsKey(object))
+        {
+            this.historyIndex.put(object, Integer.valueOf(this.history.size()));
+        }
+        this.history.add(object);
+    }
+
+
+    /**
+     * Removes the last object from the history. This is used after
+     * serializing array keys because PHP does not count keys as reference
+     * slots.
+     */
+
+    private void removeLastHistory()
+    {
+        Object object;
+        Integer index;
+
+        object = this.history.remove(this.history.size() - 1);
+        if (isReferenceable(object))
         {
-            if (iterator.next() == object)
+            index = this.historyIndex.get(object);
+            if (index != null && index.intValue() == this.history.size())
             {
-                buffer.append("R:");
-                buffer.append(index + 1);
-                buffer.append(';');
-                isReference = true;
-                break;
+                this.historyIndex.remove(object);
             }
-            index++;
         }
-        return isReference;
     }
 
 
@@ -257,13 +702,40 @@ public class Serializer
      *
      * @param mixed
      *            The object to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeMixed(final Mixed mixed, final StringBuffer buffer)
+    private void serializeMixed(final Mixed mixed, final Output output)
     {
-        serializeObject(mixed.getValue(), buffer);
+        switch (mixed.getType())
+        {
+            case Mixed.TYPE_INT:
+            case Mixed.TYPE_SHORT:
+            case Mixed.TYPE_BYTE:
+            case Mixed.TYPE_LONG:
+                serializeLong(mixed.toLong(), output);
+                break;
+
+            case Mixed.TYPE_DOUBLE:
+                serializeDouble(mixed.toDouble(), output);
+                break;
+
+            case Mixed.TYPE_FLOAT:
+                serializeDouble(mixed.toFloat(), output);
+                break;
+
+            case Mixed.TYPE_BOOLEAN:
+                serializeBoolean(mixed.toBoolean(), output);
+                break;
+
+            default:
+                serializeObject(mixed.getValue(), output);
+                return;
+        }
+
+        // Primitive values occupy a reference slot but can't be referenced
+        addHistory(null);
     }
 
 
@@ -273,19 +745,13 @@ public class Serializer
      *
      * @param string
      *            The string to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeString(final String string, final StringBuffer buffer)
+    private void serializeString(final String string, final Output output)
     {
-        String decoded = Unserializer.decode(string, charset);
-
-        buffer.append("s:");
-        buffer.append(decoded.length());
-        buffer.append(":\"");
-        buffer.append(string);
-        buffer.append("\";");
+        output.appendString(string);
     }
 
 
@@ -295,28 +761,28 @@ public class Serializer
      *
      * @param value
      *            The value to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeCharacter(final Character value, final StringBuffer buffer)
+    private void serializeCharacter(final Character value, final Output output)
     {
-        buffer.append("s:1:\"");
-        buffer.append(value);
-        buffer.append("\";");
+        output.append("s:1:\"");
+        output.appendText(value.toString());
+        output.append("\";");
     }
 
 
     /**
      * Adds a serialized NULL to the serialization buffer.
      *
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeNull(final StringBuffer buffer)
+    private void serializeNull(final Output output)
     {
-        buffer.append("N;");
+        output.append("N;");
     }
 
 
@@ -326,15 +792,15 @@ public class Serializer
      *
      * @param number
      *            The integer number to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeInteger(final int number, final StringBuffer buffer)
+    private void serializeInteger(final int number, final Output output)
     {
-        buffer.append("i:");
-        buffer.append(number);
-        buffer.append(';');
+        output.append("i:");
+        output.append(number);
+        output.append(';');
     }
 
 
@@ -344,22 +810,22 @@ public class Serializer
      *
      * @param number
      *            The lonf number to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeLong(final long number, final StringBuffer buffer)
+    private void serializeLong(final long number, final Output output)
     {
         if ((number >= Integer.MIN_VALUE) && (number <= Integer.MAX_VALUE))
         {
-            buffer.append("i:");
+            output.append("i:");
         }
         else
         {
-            buffer.append("d:");
+            output.append("d:");
         }
-        buffer.append(number);
-        buffer.append(';');
+        output.append(number);
+        output.append(';');
     }
 
 
@@ -369,15 +835,15 @@ public class Serializer
      *
      * @param number
      *            The number to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeDouble(final double number, final StringBuffer buffer)
+    private void serializeDouble(final double number, final Output output)
     {
-        buffer.append("d:");
-        buffer.append(number);
-        buffer.append(';');
+        output.append("d:");
+        output.append(number);
+        output.append(';');
     }
 
 
@@ -387,15 +853,15 @@ public class Serializer
      *
      * @param value
      *            The value to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeBoolean(final Boolean value, final StringBuffer buffer)
+    private void serializeBoolean(final boolean value, final Output output)
     {
-        buffer.append("b:");
-        buffer.append(value.booleanValue() ? 1 : 0);
-        buffer.append(';');
+        output.append("b:");
+        output.append(value ? 1 : 0);
+        output.append(';');
     }
 
 
@@ -405,29 +871,29 @@ public class Serializer
      *
      * @param collection
      *            The collection to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeCollection(final Collection<?> collection, final StringBuffer buffer)
+    private void serializeCollection(final Collection<?> collection, final Output output)
     {
         Iterator<?> iterator;
         int index;
 
-        this.history.add(collection);
-        buffer.append("a:");
-        buffer.append(collection.size());
-        buffer.append(":{");
+        addHistory(collection);
+        output.append("a:");
+        output.append(collection.size());
+        output.append(":{");
         iterator = collection.iterator();
         index = 0;
         while (iterator.hasNext())
         {
-            serializeObject(Integer.valueOf(index), buffer, false);
-            this.history.remove(this.history.size() - 1);
-            serializeObject(iterator.next(), buffer);
+            serializeObject(Integer.valueOf(index), output, false);
+            removeLastHistory();
+            serializeObject(iterator.next(), output);
             index++;
         }
-        buffer.append('}');
+        output.append('}');
     }
 
 
@@ -437,26 +903,26 @@ public class Serializer
      *
      * @param array
      *            The array to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeArray(final Object[] array, final StringBuffer buffer)
+    private void serializeArray(final Object[] array, final Output output)
     {
         int max;
 
-        this.history.add(array);
-        buffer.append("a:");
+        addHistory(array);
+        output.append("a:");
         max = array.length;
-        buffer.append(max);
-        buffer.append(":{");
+        output.append(max);
+        output.append(":{");
         for (int i = 0; i < max; i++)
         {
-            serializeObject(Integer.valueOf(i), buffer, false);
-            this.history.remove(this.history.size() - 1);
-            serializeObject(array[i], buffer);
+            serializeObject(Integer.valueOf(i), output, false);
+            removeLastHistory();
+            serializeObject(array[i], output);
         }
-        buffer.append('}');
+        output.append('}');
     }
 
 
@@ -465,100 +931,245 @@ public class Serializer
      *
      * @param map
      *            The map to serialize
-     * @param buffer
-     *            The string buffer to append serialized data to
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeMap(final Map<?, ?> map, final StringBuffer buffer)
+    private void serializeMap(final Map<?, ?> map, final Output output)
     {
         Iterator<?> iterator;
         Object key;
 
-        this.history.add(map);
-        buffer.append("a:");
-        buffer.append(map.size());
-        buffer.append(":{");
+        addHistory(map);
+        output.append("a:");
+        output.append(map.size());
+        output.append(":{");
         iterator = map.keySet().iterator();
         while (iterator.hasNext())
         {
             key = iterator.next();
-            serializeObject(key, buffer, false);
-            this.history.remove(this.history.size() - 1);
-            serializeObject(map.get(key), buffer);
+            serializeObject(key, output, false);
+            removeLastHistory();
+            serializeObject(map.get(key), output);
         }
-        buffer.append('}');
+        output.append('}');
     }
 
 
     /**
-     * Serializes a serializable object
+     * Serializes the specified mixed object as a PHP object with its class
+     * name and appends it to the serialization buffer.
      *
      * @param object
-     *            The serializable object
-     * @param buffer
-     *            The string buffer to append serialized data to
+     *            The object to serialize
+     * @param output
+     *            The output to append serialized data to
      */
 
-    private void serializeSerializable(final Serializable object, final StringBuffer buffer)
+    private void serializeMixedObject(final MixedObject object, final Output output)
     {
+        Iterator<Map.Entry<Object, Object>> iterator;
+        Map.Entry<Object, Object> entry;
         String className;
-        Class<?> c;
-        Field[] fields;
+
+        addHistory(object);
+        className = object.getClassName();
+        output.append("O:");
+        output.appendClassName(className);
+        output.append(':');
+        output.append(object.size());
+        output.append(":{");
+        iterator = object.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            entry = iterator.next();
+            serializeObject(entry.getKey(), output, false);
+            removeLastHistory();
+            serializeObject(entry.getValue(), output);
+        }
+        output.append('}');
+    }
+
+
+    /**
+     * Serializes a serializable object. The fields to serialize are taken
+     * from the cached descriptor of the object class. Fields which can't be
+     * made accessible are skipped when the descriptor is created.
+     *
+     * @param object
+     *            The serializable object
+     * @param output
+     *            The output to append serialized data to
+     */
+
+    private void serializeSerializable(final Serializable object, final Output output)
+    {
+        ClassDescriptor descriptor;
+        FieldDescriptor field;
+        FieldDescriptor[] fields;
         int i, max;
-        Field field;
-        String key;
-        Object value;
-        StringBuffer fieldBuffer;
-        int fieldCount;
 
-        this.history.add(object);
-        c = object.getClass();
-        className = c.getSimpleName();
-        buffer.append("O:");
-        buffer.append(className.length());
-        buffer.append(":\"");
-        buffer.append(className);
-        buffer.append("\":");
-
-        fieldBuffer = new StringBuffer();
-        fieldCount = 0;
-        while (c != null)
-        {
-            fields = c.getDeclaredFields();
-            for (i = 0, max = fields.length; i < max; i++)
+        addHistory(object);
+        descriptor = ClassDescriptor.forClass(object.getClass());
+        fields = descriptor.getFields();
+        if (descriptor.getHeader() != null)
+        {
+            output.append(descriptor.getHeader());
+        }
+        else
+        {
+            output.append("O:");
+            output.appendClassName(descriptor.getClassName());
+            output.append(':');
+            output.append(fields.length);
+            output.append(":{");
+        }
+        for (i = 0, max = fields.length; i < max; i++)
+        {
+            field = fields[i];
+
+            // Pre-serialized ASCII keys can be written directly because
+            // string keys never occupy a reference slot
+            if (field.getKey() != null)
+            {
+                output.append(field.getKey());
+            }
+            else
             {
-                field = fields[i];
-                if (Modifier.isStatic(field.getModifiers())) continue;
-                if (Modifier.isVolatile(field.getModifiers())) continue;
-
-                try
-                {
-                    field.setAccessible(true);
-                    key = field.getName();
-                    value = field.get(object);
-                    serializeObject(key, fieldBuffer);
-                    this.history.remove(this.history.size() - 1);
-                    serializeObject(value, fieldBuffer);
-                    fieldCount++;
-                }
-                catch (final SecurityException e)
-                {
-                    // Field is just ignored when this exception is thrown
-                }
-                catch (final IllegalArgumentException e)
-                {
-                    // Field is just ignored when this exception is thrown
-                }
-                catch (final IllegalAccessException e)
-                {
-                    // Field is just ignored when this exception is thrown
-                }
+                serializeObject(field.getName(), output);
+                removeLastHistory();
             }
-            c = c.getSuperclass();
+
+            serializeField(object, field, output);
+        }
+        output.append("}");
+    }
+
+
+    /**
+     * Serializes the value of the specified field of the specified object.
+     * Primitive values are read and written without boxing them.
+     *
+     * @param object
+     *            The object to read the field from
+     * @param field
+     *            The field to serialize
+     * @param output
+     *            The output to append serialized data to
+     */
+
+    private void serializeField(final Object object, final FieldDescriptor field,
+        final Output output)
+    {
+        FieldAccessor accessor;
+
+        accessor = field.getAccessor();
+        switch (field.getType())
+        {
+            case Mixed.TYPE_INT:
+            case Mixed.TYPE_SHORT:
+            case Mixed.TYPE_BYTE:
+                serializeInteger(accessor.getInt(object), output);
+                break;
+
+            case Mixed.TYPE_LONG:
+                serializeLong(accessor.getLong(object), output);
+                break;
+
+            case Mixed.TYPE_DOUBLE:
+            case Mixed.TYPE_FLOAT:
+                serializeDouble(accessor.getDouble(object), output);
+                break;
+
+            case Mixed.TYPE_BOOLEAN:
+                serializeBoolean(accessor.getBoolean(object), output);
+                break;
+
+            default:
+                // Char fields are boxed too because the serializer has
+                // always allowed references to Character objects
+                serializeObject(accessor.get(object), output);
+                return;
+        }
+
+        // Primitive values occupy a reference slot but can't be referenced
+        addHistory(null);
+    }
+
+
+    /**
+     * A range of root elements serialized by its own serializer in a pool
+     * thread.
+     */
+
+    private static final class Chunk extends RecursiveAction
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1L;
+
+        /** The charset of the serialized data */
+        final Charset charset;
+
+        /** The root container */
+        final Object root;
+
+        /** The root elements. Map entries if the root is a map */
+        final Object[] elements;
+
+        /** The index of the first element of the chunk */
+        final int from;
+
+        /** The index after the last element of the chunk */
+        final int to;
+
+        /** The serialized elements */
+        String text;
+
+        /** The output positions and history indices of the references */
+        int[] references;
+
+        /** The number of used entries in the references array */
+        int referencesSize;
+
+        /** The number of reference slots used by the elements */
+        int slots;
+
+
+        /**
+         * Constructor
+         *
+         * @param charset
+         *            The charset of the serialized data
+         * @param root
+         *            The root container
+         * @param elements
+         *            The root elements
+         * @param from
+         *            The index of the first element of the chunk
+         * @param to
+         *            The index after the last element of the chunk
+         */
+
+        Chunk(final Charset charset, final Object root,
+            final Object[] elements, final int from, final int to)
+        {
+            super();
+            this.charset = charset;
+            this.root = root;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        /**
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+
+        @Override
+        protected void compute()
+        {
+            new Serializer(this.charset).serializeChunk(this);
         }
-        buffer.append(fieldCount);
-        buffer.append(":{");
-        buffer.append(fieldBuffer);
-        buffer.append("}");
     }
 }
@@ -0,0 +1,340 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import de.ailis.pherialize.exceptions.SerializeException;
+
+
+/**
+ * Output which writes the encoded serialized data through a small buffer to
+ * an output stream or a writable byte channel. IO errors are wrapped in a
+ * SerializeException.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+class StreamOutput extends Output
+{
+    /** The default buffer size */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The output stream to write to. Null if writing to a channel */
+    private final OutputStream stream;
+
+    /** The channel to write to. Null if writing to a stream */
+    private final WritableByteChannel channel;
+
+    /** The buffer */
+    private final byte[] buffer;
+
+    /** The number of bytes in the buffer */
+    private int size;
+
+
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The output stream to write to
+     * @param charset
+     *            The charset of the serialized data
+     */
+
+    StreamOutput(final OutputStream stream, final Charset charset)
+    {
+        super(charset);
+        this.stream = stream;
+        this.channel = null;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to write to
+     * @param charset
+     *            The charset of the serialized data
+     */
+
+    StreamOutput(final WritableByteChannel channel, final Charset charset)
+    {
+        super(charset);
+        this.stream = null;
+        this.channel = channel;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#append(char)
+     */
+
+    @Override
+    void append(final char c)
+    {
+        if (this.size == this.buffer.length) flush();
+        this.buffer[this.size++] = (byte) c;
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#append(java.lang.String)
+     */
+
+    @Override
+    void append(final String text)
+    {
+        int i, max;
+
+        for (i = 0, max = text.length(); i < max; i++)
+        {
+            append(text.charAt(i));
+        }
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#append(long)
+     */
+
+    @Override
+    void append(final long number)
+    {
+        long value;
+        int digits, pos;
+
+        if (number == Long.MIN_VALUE)
+        {
+            append(Long.toString(number));
+            return;
+        }
+        if (number < 0)
+        {
+            append('-');
+            value = -number;
+        }
+        else
+        {
+            value = number;
+        }
+        digits = countDigits(value);
+        if (this.size + digits > this.buffer.length) flush();
+        pos = this.size + digits;
+        this.size = pos;
+        do
+        {
+            this.buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        while (value != 0);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#appendText(java.lang.String)
+     */
+
+    @Override
+    void appendText(final String text)
+    {
+        write(text.getBytes(this.charset));
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#appendString(java.lang.String)
+     */
+
+    @Override
+    void appendString(final String string)
+    {
+        byte[] bytes;
+        int length;
+
+        if (!this.encodedLength.isUtf8())
+        {
+            bytes = string.getBytes(this.charset);
+            append("s:");
+            append(bytes.length);
+            append(":\"");
+            write(bytes);
+            append("\";");
+            return;
+        }
+
+        // UTF-8 is encoded directly into the buffer
+        length = EncodedLength.utf8(string);
+        append("s:");
+        append(length);
+        append(":\"");
+        writeUtf8(string);
+        append("\";");
+    }
+
+
+    /**
+     * Encodes the specified string in UTF-8 directly into the buffer.
+     * Unpaired surrogates are replaced with a question mark like the Java
+     * encoder does.
+     *
+     * @param string
+     *            The string to write
+     */
+
+    private void writeUtf8(final String string)
+    {
+        byte[] buffer;
+        int i, max;
+        int size;
+        int c;
+        boolean fits;
+
+        buffer = this.buffer;
+        size = this.size;
+        max = string.length();
+
+        // A character never takes more than three bytes (Surrogate pairs
+        // take four bytes for two characters)
+        fits = buffer.length - size >= 3L * max;
+        for (i = 0; i < max; i++)
+        {
+            if (!fits && size > buffer.length - 4)
+            {
+                this.size = size;
+                flush();
+                size = 0;
+            }
+            c = string.charAt(i);
+            if (c < 0x80)
+            {
+                buffer[size++] = (byte) c;
+            }
+            else if (c < 0x800)
+            {
+                buffer[size++] = (byte) (0xc0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            }
+            else if (Character.isHighSurrogate((char) c) && i + 1 < max
+                && Character.isLowSurrogate(string.charAt(i + 1)))
+            {
+                c = Character.toCodePoint((char) c, string.charAt(++i));
+                buffer[size++] = (byte) (0xf0 | c >> 18);
+                buffer[size++] = (byte) (0x80 | c >> 12 & 0x3f);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            }
+            else if (Character.isSurrogate((char) c))
+            {
+                buffer[size++] = '?';
+            }
+            else
+            {
+                buffer[size++] = (byte) (0xe0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        this.size = size;
+    }
+
+
+    /**
+     * Writes the specified bytes. Large byte arrays bypass the buffer.
+     *
+     * @param bytes
+     *            The bytes to write
+     */
+
+    private void write(final byte[] bytes)
+    {
+        if (this.size + bytes.length > this.buffer.length) flush();
+        if (bytes.length > this.buffer.length)
+        {
+            write(bytes, bytes.length);
+        }
+        else
+        {
+            System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+            this.size += bytes.length;
+        }
+    }
+
+
+    /**
+     * Writes all buffered bytes to the stream or channel. The underlying
+     * stream or channel itself is not flushed.
+     */
+
+    void flush()
+    {
+        write(this.buffer, this.size);
+        this.size = 0;
+    }
+
+
+    /**
+     * Writes the specified bytes to the stream or channel.
+     *
+     * @param bytes
+     *            The bytes to write
+     * @param length
+     *            The number of bytes to write
+     */
+
+    private void write(final byte[] bytes, final int length)
+    {
+        ByteBuffer byteBuffer;
+
+        if (length == 0) return;
+        try
+        {
+            if (this.stream != null)
+            {
+                this.stream.write(bytes, 0, length);
+            }
+            else
+            {
+                byteBuffer = ByteBuffer.wrap(bytes, 0, length);
+                while (byteBuffer.hasRemaining())
+                {
+                    this.channel.write(byteBuffer);
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new SerializeException("Unable to write serialized data", e);
+        }
+    }
+}
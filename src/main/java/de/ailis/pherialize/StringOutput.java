@@ -0,0 +1,214 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.nio.charset.Charset;
+
+
+/**
+ * Output which builds the serialized data as a string. The data is collected
+ * in an unsynchronized growable character buffer which can be reset and
+ * reused for multiple serializations.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+class StringOutput extends Output
+{
+    /** The initial buffer size */
+    private static final int BUFFER_SIZE = 256;
+
+    /** Buffers larger than this are released when the output is reset */
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    /** The buffer containing the serialized data */
+    private char[] buffer;
+
+    /** The number of characters in the buffer */
+    private int size;
+
+
+    /**
+     * Constructor
+     *
+     * @param charset
+     *            The charset of the serialized data
+     */
+
+    StringOutput(final Charset charset)
+    {
+        super(charset);
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+
+    /**
+     * Clears the output so it can be reused. Very large buffers are released
+     * so a single huge serialization does not pin its memory forever.
+     */
+
+    void reset()
+    {
+        this.size = 0;
+        if (this.buffer.length > MAX_RETAINED_SIZE)
+            this.buffer = new char[BUFFER_SIZE];
+    }
+
+
+    /**
+     * Returns the number of characters written so far.
+     *
+     * @return The number of characters
+     */
+
+    int length()
+    {
+        return this.size;
+    }
+
+
+    /**
+     * Makes sure the buffer can take the specified number of additional
+     * characters.
+     *
+     * @param length
+     *            The number of additional characters
+     */
+
+    private void ensureCapacity(final int length)
+    {
+        char[] newBuffer;
+        int required;
+
+        required = this.size + length;
+        if (required <= this.buffer.length) return;
+        newBuffer = new char[Math.max(required, this.buffer.length * 2)];
+        System.arraycopy(this.buffer, 0, newBuffer, 0, this.size);
+        this.buffer = newBuffer;
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#append(char)
+     */
+
+    @Override
+    void append(final char c)
+    {
+        if (this.size == this.buffer.length) ensureCapacity(1);
+        this.buffer[this.size++] = c;
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#append(java.lang.String)
+     */
+
+    @Override
+    void append(final String text)
+    {
+        int length;
+
+        length = text.length();
+        ensureCapacity(length);
+        text.getChars(0, length, this.buffer, this.size);
+        this.size += length;
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#append(long)
+     */
+
+    @Override
+    void append(final long number)
+    {
+        long value;
+        int digits, pos;
+
+        if (number == Long.MIN_VALUE)
+        {
+            append(Long.toString(number));
+            return;
+        }
+        if (number < 0)
+        {
+            append('-');
+            value = -number;
+        }
+        else
+        {
+            value = number;
+        }
+        digits = countDigits(value);
+        ensureCapacity(digits);
+        pos = this.size + digits;
+        this.size = pos;
+        do
+        {
+            this.buffer[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        while (value != 0);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#appendText(java.lang.String)
+     */
+
+    @Override
+    void appendText(final String text)
+    {
+        append(text);
+    }
+
+
+    /**
+     * @see de.ailis.pherialize.Output#appendString(java.lang.String)
+     */
+
+    @Override
+    void appendString(final String string)
+    {
+        append("s:");
+        append(this.encodedLength.of(string));
+        append(":\"");
+        append(string);
+        append("\";");
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+
+    @Override
+    public String toString()
+    {
+        return new String(this.buffer, 0, this.size);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+
+/**
+ * Captures a generic type for type-directed unserialization. Create an
+ * anonymous sub class to describe the type:
+ *
+ * <pre>
+ * List&lt;Person&gt; persons = Pherialize.unserialize(data,
+ *     new TypeReference&lt;List&lt;Person&gt;&gt;() {});
+ * </pre>
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ * @param <T>
+ *            The captured type
+ */
+
+public abstract class TypeReference<T>
+{
+    /** The captured type */
+    private final Type type;
+
+
+    /**
+     * Constructor
+     */
+
+    protected TypeReference()
+    {
+        Type superClass;
+
+        superClass = getClass().getGenericSuperclass();
+        if (!(superClass instanceof ParameterizedType))
+            throw new IllegalStateException(
+                "TypeReference must be created with a type argument");
+        this.type = ((ParameterizedType) superClass).getActualTypeArguments()[0];
+    }
+
+
+    /**
+     * Returns the captured type.
+     *
+     * @return The captured type
+     */
+
+    public Type getType()
+    {
+        return this.type;
+    }
+}
@@ -21,18 +21,53 @@
  * IN THE SOFTWARE.
  */
 
+
 package de.ailis.pherialize;
 
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.ailis.pherialize.exceptions.UnserializeException;
 
 
 /**
- * Unserializes a PHP serialize format string into a Java object.
+ * Unserializes a PHP serialize format string into a Java object. The data is
+ * parsed directly from its raw bytes so string lengths are measured in bytes
+ * exactly like PHP does and each string payload is decoded only once.
+ *
+ * The data can also be read from an input stream or a readable byte channel.
+ * In this case it is parsed through a refillable buffer as it arrives and
+ * multiple concatenated values can be read by calling
+ * {@link #unserializeObject()} repeatedly until {@link #hasMoreObjects()}
+ * returns false. IO errors are wrapped in an UnserializeException.
+ *
+ * An unserializer can be reused for other data with
+ * {@link #reset(byte[])}. The settings and the buffers are kept. An
+ * unserializer is not thread-safe, so it must not be used by multiple
+ * threads at the same time.
+ *
+ * The data is tokenized by a {@link PullParser}. The unserializer builds the
+ * object tree from the tokens and resolves the references.
+ *
+ * PHP objects are unserialized into instances of the Java classes registered
+ * in the {@link ClassRegistry} set with {@link #setClassRegistry(ClassRegistry)}.
+ * Objects of unknown classes are unserialized into a {@link MixedObject}.
+ *
+ * With {@link #unserializeObject(Class)} and
+ * {@link #unserializeObject(TypeReference)} the data is decoded directly into
+ * the requested Java types without building Mixed objects. PHP arrays can be
+ * decoded into collections, maps, Java arrays and plain Java objects.
  *
  * @author Klaus Reimer (k@ailis.de)
  * @version $Revision$
@@ -40,17 +75,45 @@ import de.ailis.pherialize.exceptions.UnserializeException;
 
 public class Unserializer
 {
-    /** The current pointer in the data */
-    private int pos;
+    /** The minimum number of bytes decoded by a single task */
+    private static final int MIN_CHUNK_LENGTH = 64 * 1024;
+
+    /** The number of chunks per pool thread for balancing the load */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** Histories larger than this are released when they are cleared */
+    private static final int MAX_RETAINED_HISTORY = 64 * 1024;
 
-    /** The data to unserialize */
-    private final String data;
+    /** The parser reading the tokens from the data */
+    private final PullParser parser;
 
     /** The original charset of the input data. */
     private final Charset charset;
 
     /** The object history for resolving references */
-    private final List<Object> history;
+    private List<Object> history;
+
+    /** The registry used to resolve PHP class names. May be null */
+    private ClassRegistry classRegistry;
+
+    /** The cache for decoded array keys. May be null */
+    private KeyCache keyCache;
+
+    /** If arrays are decoded lazily on first access */
+    private boolean lazy;
+
+    /** The position of the value found by extract(). -1 if not found */
+    private int extractStart;
+
+    /** If the value found by extract() contains references */
+    private boolean extractReferences;
+
+    /**
+     * The number of reference slots between the root slot and the first
+     * slot in the history. Only used by the tasks of a parallel
+     * unserialization.
+     */
+    private int historyOffset;
 
 
     /**
@@ -62,7 +125,50 @@ public class Unserializer
 
     public Unserializer(final String data)
     {
-        this(data, Charset.forName("UTF-8"));
+        this(data, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The data to unserialize
+     * @param charset
+     *            The charset of the data
+     */
+
+    public Unserializer(final String data, final Charset charset)
+    {
+        this(data.getBytes(charset), charset);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The data to unserialize
+     */
+
+    public Unserializer(final byte[] data)
+    {
+        this(data, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            The data to unserialize
+     * @param charset
+     *            The charset of the data
+     */
+
+    public Unserializer(final byte[] data, final Charset charset)
+    {
+        this(data, 0, data.length, charset);
     }
 
 
@@ -71,221 +177,1890 @@ public class Unserializer
      *
      * @param data
      *            The data to unserialize
+     * @param off
+     *            The offset of the serialized data in the byte array
+     * @param len
+     *            The number of bytes of serialized data
+     * @param charset
+     *            The charset of the data
      */
 
-    public Unserializer(final String data, Charset charset)
+    public Unserializer(final byte[] data, final int off, final int len,
+        final Charset charset)
     {
         super();
-        this.data = decode(data, charset);
+        this.parser = new PullParser(data, off, len, charset);
         this.charset = charset;
-        this.pos = 0;
         this.history = new ArrayList<Object>();
     }
 
 
     /**
-     * Unserializes the next object in the data stream.
+     * Constructor
      *
-     * @return The unserializes object
+     * @param stream
+     *            The input stream to read the data from
      */
 
-    public Mixed unserializeObject()
+    public Unserializer(final InputStream stream)
     {
-        char type;
-        Mixed result;
+        this(stream, StandardCharsets.UTF_8);
+    }
 
-        type = this.data.charAt(this.pos);
-        switch (type)
-        {
-            case 's':
-                result = unserializeString();
-                break;
 
-            case 'i':
-                result = unserializeInteger();
-                break;
+    /**
+     * Constructor
+     *
+     * @param stream
+     *            The input stream to read the data from
+     * @param charset
+     *            The charset of the data
+     */
 
-            case 'd':
-                result = unserializeDouble();
-                break;
+    public Unserializer(final InputStream stream, final Charset charset)
+    {
+        super();
+        this.parser = new PullParser(stream, charset);
+        this.charset = charset;
+        this.history = new ArrayList<Object>();
+    }
 
-            case 'b':
-                result = unserializeBoolean();
-                break;
 
-            case 'N':
-                result = unserializeNull();
-                break;
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to read the data from
+     */
 
-            case 'a':
-                return unserializeArray();
+    public Unserializer(final ReadableByteChannel channel)
+    {
+        this(channel, StandardCharsets.UTF_8);
+    }
 
-            case 'R':
-                result = unserializeReference();
-                break;
 
-            default:
-                throw new UnserializeException(
-                    "Unable to unserialize unknown type " + type);
-        }
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel to read the data from
+     * @param charset
+     *            The charset of the data
+     */
 
-        this.history.add(result);
-        return result;
+    public Unserializer(final ReadableByteChannel channel,
+        final Charset charset)
+    {
+        super();
+        this.parser = new PullParser(channel, charset);
+        this.charset = charset;
+        this.history = new ArrayList<Object>();
+    }
+
+
+    /**
+     * Resets the unserializer to unserialize the specified data. The
+     * reference history of the last unserialized object is cleared so the
+     * unserializer no longer holds on to it. The class registry, key cache,
+     * lazy mode and buffers are kept. Lazy arrays returned before the reset
+     * are still decoded from their own data. An unserializer reading from a
+     * stream or channel reads the specified data instead.
+     *
+     * @param data
+     *            The data to unserialize
+     */
+
+    public void reset(final byte[] data)
+    {
+        reset(data, 0, data.length);
+    }
+
+
+    /**
+     * Resets the unserializer to unserialize the specified data.
+     *
+     * @param data
+     *            The data to unserialize
+     * @param off
+     *            The offset of the serialized data in the byte array
+     * @param len
+     *            The number of bytes of serialized data
+     * @see #reset(byte[])
+     */
+
+    public void reset(final byte[] data, final int off, final int len)
+    {
+        this.parser.reset(data, off, len);
+        clearHistory();
+    }
+
+
+    /**
+     * Resets the unserializer to unserialize the specified data.
+     *
+     * @param data
+     *            The data to unserialize
+     * @see #reset(byte[])
+     */
+
+    public void reset(final String data)
+    {
+        reset(data.getBytes(this.charset));
     }
 
 
     /**
-     * Unserializes the next object in the data stream into a String.
+     * Returns the charset of the data.
      *
-     * @return The unserialized String
+     * @return The charset
+     */
+
+    public Charset getCharset()
+    {
+        return this.charset;
+    }
+
+
+    /**
+     * Clears the reference history. A very large history is released
+     * instead so a single huge object does not pin its memory forever.
      */
 
-    private Mixed unserializeString()
+    private void clearHistory()
     {
-        int pos, length;
+        if (this.history.size() > MAX_RETAINED_HISTORY)
+            this.history = new ArrayList<Object>();
+        else
+            this.history.clear();
+    }
+
+
+    /**
+     * Sets the registry used to map PHP class names to Java classes.
+     *
+     * @param classRegistry
+     *            The class registry. Null to unserialize all PHP objects
+     *            into MixedObject instances
+     */
 
-        pos = this.data.indexOf(':', this.pos + 2);
-        length = Integer.parseInt(this.data.substring(this.pos + 2, pos));
-        this.pos = pos + length + 4;
-        String unencoded = this.data.substring(pos + 2, pos + 2 + length);
-        return new Mixed(encode(unencoded, charset));
+    public void setClassRegistry(final ClassRegistry classRegistry)
+    {
+        this.classRegistry = classRegistry;
     }
 
 
     /**
-     * Unserializes the next object in the data stream into an Integer.
+     * Returns the registry used to map PHP class names to Java classes.
      *
-     * @return The unserialized Integer
+     * @return The class registry. May be null
      */
 
-    private Mixed unserializeInteger()
+    public ClassRegistry getClassRegistry()
     {
-        Integer result;
-        int pos;
+        return this.classRegistry;
+    }
+
+
+    /**
+     * Sets the cache used for decoding string array keys and property names.
+     * The same cache can be used for multiple unserializers in the same
+     * thread.
+     *
+     * @param keyCache
+     *            The key cache. Null to decode all keys without caching
+     */
 
-        pos = this.data.indexOf(';', this.pos + 2);
-        result = Integer.valueOf(this.data.substring(this.pos + 2, pos));
-        this.pos = pos + 1;
-        return new Mixed(result);
+    public void setKeyCache(final KeyCache keyCache)
+    {
+        this.keyCache = keyCache;
     }
 
 
     /**
-     * Unserializes the next object in the data stream into an Double.
+     * Returns the cache used for decoding string array keys and property
+     * names.
      *
-     * @return The unserialized Double
+     * @return The key cache. May be null
      */
 
-    private Mixed unserializeDouble()
+    public KeyCache getKeyCache()
     {
-        Double result;
-        int pos;
+        return this.keyCache;
+    }
 
-        pos = this.data.indexOf(';', this.pos + 2);
-        result = Double.valueOf(this.data.substring(this.pos + 2, pos));
-        this.pos = pos + 1;
-        return new Mixed(result);
+
+    /**
+     * Enables or disables lazy unserialization. In lazy mode the structure
+     * of the next object is only scanned and checked by
+     * {@link #unserializeObject()}. Arrays are returned as lazy arrays which
+     * decode their entries (including strings and nested arrays) on first
+     * access. References are resolved through the reference slots recorded
+     * during the scan. Lazy mode requires in-memory data and the data must
+     * not be modified while lazy arrays are still in use. Lazy arrays must
+     * not be accessed concurrently from multiple threads.
+     *
+     * @param lazy
+     *            True to decode arrays lazily, false to decode everything
+     *            immediately
+     */
+
+    public void setLazy(final boolean lazy)
+    {
+        this.lazy = lazy;
     }
 
 
     /**
-     * Unserializes the next object in the data stream as a reference.
+     * Checks if arrays are decoded lazily.
      *
-     * @return The unserialized reference
+     * @return True if arrays are decoded lazily, false if not
+     * @see #setLazy(boolean)
      */
 
-    private Mixed unserializeReference()
+    public boolean isLazy()
     {
-        int index;
-        int pos;
+        return this.lazy;
+    }
 
-        pos = this.data.indexOf(';', this.pos + 2);
-        index = Integer.parseInt(this.data.substring(this.pos + 2, pos));
-        this.pos = pos + 1;
-        return (Mixed) this.history.get(index - 1);
+
+    /**
+     * Checks if there is more data to unserialize. When reading from a
+     * stream or channel this blocks until data is available or the end of
+     * the input has been reached.
+     *
+     * @return If more data is available
+     */
+
+    public boolean hasMoreObjects()
+    {
+        return this.parser.hasNext();
     }
 
 
     /**
-     * Unserializes the next object in the data stream into a Boolean.
+     * Unserializes the next object in the data stream. Each object has its
+     * own reference history like in PHP.
      *
-     * @return The unserialized Boolean
+     * @return The unserializes object
      */
 
-    private Mixed unserializeBoolean()
+    public Mixed unserializeObject()
     {
-        Boolean result;
+        clearHistory();
+        if (this.lazy) return unserializeLazy();
+        return unserializeValue();
+    }
+
+
+    /**
+     * Unserializes the next object in the data stream directly into the
+     * specified type. Scalar values are converted with the same rules as the
+     * Mixed class. PHP arrays and objects are decoded into collections,
+     * maps, Java arrays or plain Java objects depending on the type. The
+     * type Object decodes into plain Java types (String, Integer, Double,
+     * Boolean, LinkedHashMap) and Mixed decodes into the Mixed tree.
+     *
+     * @param <T>
+     *            The target type
+     * @param type
+     *            The target type
+     * @return The unserialized object
+     */
 
-        result = Boolean.valueOf(this.data.charAt(this.pos + 2) == '1');
-        this.pos += 4;
-        return new Mixed(result);
+    @SuppressWarnings("unchecked")
+    public <T> T unserializeObject(final Class<T> type)
+    {
+        clearHistory();
+        return (T) unserializeValue(type);
     }
 
 
     /**
-     * Unserializes the next object in the data stream into a Null
+     * Unserializes the next object in the data stream directly into the
+     * specified generic type like List&lt;Person&gt; or
+     * Map&lt;String, Person&gt;.
      *
-     * @return The unserialized Null
+     * @param <T>
+     *            The target type
+     * @param type
+     *            The target type reference
+     * @return The unserialized object
+     * @see #unserializeObject(Class)
      */
 
-    private Mixed unserializeNull()
+    @SuppressWarnings("unchecked")
+    public <T> T unserializeObject(final TypeReference<T> type)
     {
-        this.pos += 2;
-        return null;
+        clearHistory();
+        return (T) unserializeValue(type.getType());
     }
 
 
     /**
-     * Unserializes the next object in the data stream into an array. This
-     * method returns an ArrayList if the unserialized array has numerical
-     * keys starting with 0 or a HashMap otherwise.
+     * Unserializes the next object in the data stream using the specified
+     * pool if it is a large array. The structure of the array is scanned
+     * first to find the boundaries of its elements. Then ranges of elements
+     * are decoded in parallel and put into the array in order.
      *
-     * @return The unserialized array
+     * References within an element and references to the array itself are
+     * resolved like in sequential mode. If an element references a value of
+     * another element then the whole array is unserialized sequentially.
+     * Small arrays, other values and streamed data are always unserialized
+     * sequentially and lazy mode is ignored. The key cache is not used by
+     * the pool threads because it is not thread-safe, each task uses its
+     * own key cache instead.
+     *
+     * @param pool
+     *            The pool to decode the element ranges on
+     * @return The unserialized object
      */
 
-    private Mixed unserializeArray()
+    public Mixed unserializeObject(final ForkJoinPool pool)
     {
         Mixed result;
         MixedArray array;
-        int pos;
-        int max;
-        int i;
-        Object key, value;
+        Chunk[] chunks;
+        int[] offsets, slots;
+        int start, end, max, slot, count, from, chunkLength, i, j;
+
+        clearHistory();
+        start = this.parser.pos;
+        if (!this.parser.isInMemory() || pool.getParallelism() < 2
+            || this.parser.end - start < 2 * MIN_CHUNK_LENGTH
+            || this.parser.peek() != 'a')
+            return unserializeValue();
+
+        // Scan the element boundaries and the first reference slots of the
+        // elements
+        this.parser.skip(2);
+        max = this.parser.readInt(':');
+        this.parser.skip(1);
+        if (max < 0 || max > (this.parser.end - this.parser.pos) / 4)
+        {
+            this.parser.pos = start;
+            return unserializeValue();
+        }
+        offsets = new int[max + 1];
+        slots = new int[max];
+        slot = 2;
+        for (i = 0; i < max; i++)
+        {
+            offsets[i] = this.parser.pos;
+            slots[i] = slot;
+            this.parser.skipKey();
+            count = scanSlots(slot, slot);
+            if (count < 0)
+            {
+                this.parser.pos = start;
+                return unserializeValue();
+            }
+            slot += count;
+        }
+        offsets[max] = this.parser.pos;
+        this.parser.skip(1);
+        end = this.parser.pos;
 
-        pos = this.data.indexOf(':', this.pos + 2);
-        max = Integer.parseInt(this.data.substring(this.pos + 2, pos));
-        this.pos = pos + 2;
+        chunkLength = Math.max(MIN_CHUNK_LENGTH, (end - start)
+            / (pool.getParallelism() * CHUNKS_PER_THREAD));
         array = new MixedArray(max);
         result = new Mixed(array);
-        this.history.add(result);
-        for (i = 0; i < max; i++)
+        chunks = new Chunk[max];
+        count = 0;
+        for (from = 0, i = 1; i <= max; i++)
         {
-            key = unserializeObject();
-            this.history.remove(this.history.size() - 1);
-            value = unserializeObject();
-            array.put(key, value);
+            if (i < max && offsets[i] - offsets[from] < chunkLength) continue;
+            chunks[count] = new Chunk(this, result, offsets, slots, from, i);
+            pool.execute(chunks[count++]);
+            from = i;
+        }
+
+        try
+        {
+            for (i = 0; i < count; i++)
+            {
+                chunks[i].join();
+                for (j = 0; j < chunks[i].keys.length; j++)
+                    array.put(chunks[i].keys[j], chunks[i].values[j]);
+
+                // Release the decoded chunk as soon as it is stitched
+                chunks[i] = null;
+            }
+        }
+        finally
+        {
+            for (i = 0; i < count; i++)
+                if (chunks[i] != null) chunks[i].cancel(false);
         }
-        this.pos++;
+        this.parser.pos = end;
         return result;
     }
 
 
-    static String decode(String encoded, Charset charset)
+    /**
+     * Extracts the value at the specified path of array keys or property
+     * names from the next object in the data. All values which are not on
+     * the path are skipped by their declared lengths without decoding them,
+     * so only the extracted value is built. When the extracted value
+     * contains references then the whole object is unserialized to resolve
+     * them. The data pointer is moved behind the object. Requires in-memory
+     * data.
+     *
+     * @param path
+     *            The array keys or property names leading to the value.
+     *            Integer keys are specified in decimal form
+     * @return The extracted value. Null if the path doesn't exist or the
+     *         value is null
+     */
+
+    public Mixed extract(final String... path)
+    {
+        byte[][] names;
+        long[] indices;
+        int start;
+        int end;
+        int i;
+        Mixed value;
+
+        if (!this.parser.isInMemory())
+            throw new UnserializeException(
+                "Extraction requires in-memory data");
+        clearHistory();
+        names = new byte[path.length][];
+        indices = new long[path.length];
+        for (i = 0; i < path.length; i++)
+        {
+            names[i] = path[i].getBytes(this.charset);
+            indices[i] = parseIndex(path[i]);
+        }
+        start = this.parser.pos;
+        this.extractStart = -1;
+        if (path.length == 0)
+        {
+            this.extractStart = start;
+            this.extractReferences = this.parser.skipData();
+        }
+        else
+            locate(names, indices, 0);
+        if (this.extractStart < 0) return null;
+        end = this.parser.pos;
+
+        // Values with references are resolved in the context of the whole
+        // object
+        if (this.extractReferences)
+        {
+            this.parser.pos = start;
+            value = unserializeValue();
+            for (i = 0; i < path.length && value != null; i++)
+                value = getChild(value, path[i]);
+            return value;
+        }
+
+        this.parser.pos = this.extractStart;
+        value = unserializeValue();
+        this.parser.pos = end;
+        return value;
+    }
+
+
+    /**
+     * Unserializes the next value in the data stream. This is called
+     * recursively for array values.
+     *
+     * @return The unserialized value
+     */
+
+    private Mixed unserializeValue()
     {
-        try {
-            return new String(encoded.getBytes(charset), "ISO-8859-1");
-        } catch (UnsupportedEncodingException e) {
-            return encoded;
+        Mixed result;
+        int token;
+
+        token = this.parser.nextToken();
+        switch (token)
+        {
+            case PullParser.STRING:
+                result = new Mixed(this.parser.getString());
+                break;
+
+            case PullParser.INT:
+                result = Mixed.valueOf(this.parser.getInt());
+                break;
+
+            case PullParser.DOUBLE:
+                result = new Mixed(this.parser.getDouble());
+                break;
+
+            case PullParser.BOOL:
+                result = Mixed.valueOf(this.parser.getBoolean());
+                break;
+
+            case PullParser.NULL:
+                result = null;
+                break;
+
+            case PullParser.START_ARRAY:
+                return unserializeArray();
+
+            case PullParser.START_OBJECT:
+                return unserializePhpObject();
+
+            case PullParser.REFERENCE:
+                result = (Mixed) resolveReference();
+                break;
+
+            default:
+                throw new UnserializeException("Unexpected token " + token);
         }
+
+        this.history.add(result);
+        return result;
+    }
+
+
+    /**
+     * Returns the history entry referenced by the current reference token.
+     *
+     * @return The referenced value
+     */
+
+    private Object resolveReference()
+    {
+        int index;
+
+        index = this.parser.getReference();
+        if (index > 1) index -= this.historyOffset;
+        if (index < 1 || index > this.history.size())
+            throw new UnserializeException("Invalid reference " + index);
+        return this.history.get(index - 1);
     }
 
 
-    static String encode(String decoded, Charset charset)
+    /**
+     * Unserializes the next value in the data stream directly into the
+     * specified type. This is called recursively for array values.
+     *
+     * @param type
+     *            The target type
+     * @return The unserialized value
+     */
+
+    private Object unserializeValue(final Type type)
     {
-        try {
-            return new String(decoded.getBytes("ISO-8859-1"), charset);
-        } catch (UnsupportedEncodingException e) {
-            return decoded;
+        Class<?> rawType;
+        Object result;
+        int token;
+
+        rawType = Converter.getRawType(type);
+        if (rawType == Mixed.class) return unserializeValue();
+        if (rawType == MixedArray.class)
+        {
+            result = unserializeValue();
+            return result == null ? null : ((Mixed) result).toArray();
+        }
+
+        token = this.parser.nextToken();
+        switch (token)
+        {
+            case PullParser.STRING:
+                result = Converter.convert(this.parser.getString(), rawType);
+                break;
+
+            case PullParser.INT:
+                result = Converter.convert(Integer.valueOf(this.parser
+                    .getInt()), rawType);
+                break;
+
+            case PullParser.DOUBLE:
+                result = Converter.convert(Double.valueOf(this.parser
+                    .getDouble()), rawType);
+                break;
+
+            case PullParser.BOOL:
+                result = Converter.convert(Boolean.valueOf(this.parser
+                    .getBoolean()), rawType);
+                break;
+
+            case PullParser.NULL:
+                result = Converter.convert((Object) null, rawType);
+                break;
+
+            case PullParser.START_ARRAY:
+                return unserializeArray(type, rawType, this.parser.getSize());
+
+            case PullParser.START_OBJECT:
+                return unserializePhpObject(type, rawType);
+
+            case PullParser.REFERENCE:
+                result = Converter.convert(resolveReference(), rawType);
+                break;
+
+            default:
+                throw new UnserializeException("Unexpected token " + token);
+        }
+
+        this.history.add(result);
+        return result;
+    }
+
+
+    /**
+     * Unserializes the next PHP array or object properties in the data stream
+     * into the specified type. The start token has already been read.
+     *
+     * @param type
+     *            The target type
+     * @param rawType
+     *            The raw target type
+     * @param max
+     *            The number of entries
+     * @return The unserialized value
+     */
+
+    private Object unserializeArray(final Type type, final Class<?> rawType,
+        final int max)
+    {
+        Object result;
+
+        if (rawType.isArray())
+            result = unserializeJavaArray(Converter.getComponentType(type),
+                max);
+        else if (Collection.class.isAssignableFrom(rawType)
+            || rawType == Iterable.class)
+            result = unserializeCollection(rawType, Converter
+                .getTypeArgument(type, 0), max);
+        else if (Map.class.isAssignableFrom(rawType)
+            || rawType == Object.class)
+            result = unserializeMap(rawType, Converter.getTypeArgument(type,
+                0), Converter.getTypeArgument(type, 1), max);
+        else if (!rawType.isPrimitive() && !rawType.isEnum()
+            && !rawType.getName().startsWith("java."))
+            result = unserializeBean(ClassDescriptor.forClass(rawType), max);
+        else
+            throw new UnserializeException("Unable to unserialize array into "
+                + rawType.getName());
+        this.parser.nextToken();
+        return result;
+    }
+
+
+    /**
+     * Unserializes the entries of a PHP array into a Java array.
+     *
+     * @param componentType
+     *            The component type of the Java array
+     * @param max
+     *            The number of entries
+     * @return The Java array
+     */
+
+    private Object unserializeJavaArray(final Type componentType, final int max)
+    {
+        Class<?> rawComponentType;
+        Object array;
+        int i;
+
+        rawComponentType = Converter.getRawType(componentType);
+        array = Array.newInstance(rawComponentType, max);
+        this.history.add(array);
+        for (i = 0; i < max; i++)
+        {
+            unserializeKey(Object.class);
+            Array.set(array, i, unserializeValue(componentType));
+        }
+        return array;
+    }
+
+
+    /**
+     * Unserializes the values of a PHP array into a collection. The keys are
+     * ignored.
+     *
+     * @param rawType
+     *            The raw collection type
+     * @param elementType
+     *            The element type
+     * @param max
+     *            The number of entries
+     * @return The collection
+     */
+
+    private Collection<Object> unserializeCollection(final Class<?> rawType,
+        final Type elementType, final int max)
+    {
+        Collection<Object> collection;
+        int i;
+
+        collection = Converter.newCollection(rawType, max);
+        this.history.add(collection);
+        for (i = 0; i < max; i++)
+        {
+            unserializeKey(Object.class);
+            collection.add(unserializeValue(elementType));
+        }
+        return collection;
+    }
+
+
+    /**
+     * Unserializes the entries of a PHP array into a map.
+     *
+     * @param rawType
+     *            The raw map type
+     * @param keyType
+     *            The key type
+     * @param valueType
+     *            The value type
+     * @param max
+     *            The number of entries
+     * @return The map
+     */
+
+    private Map<Object, Object> unserializeMap(final Class<?> rawType,
+        final Type keyType, final Type valueType, final int max)
+    {
+        Map<Object, Object> map;
+        Object key;
+        int i;
+
+        map = Converter.newMap(rawType, max);
+        this.history.add(map);
+        for (i = 0; i < max; i++)
+        {
+            key = unserializeKey(keyType);
+            map.put(key, unserializeValue(valueType));
+        }
+        return map;
+    }
+
+
+    /**
+     * Unserializes the entries of a PHP array or the properties of a PHP
+     * object into a new instance of the described class. Each value is
+     * decoded directly into the generic type of the matching field. Entries
+     * without a matching field are ignored.
+     *
+     * @param descriptor
+     *            The descriptor of the Java class
+     * @param max
+     *            The number of entries
+     * @return The Java object
+     */
+
+    private Object unserializeBean(final ClassDescriptor descriptor,
+        final int max)
+    {
+        Object object;
+        FieldDescriptor field;
+        int i;
+
+        object = descriptor.newInstance();
+        this.history.add(object);
+        for (i = 0; i < max; i++)
+        {
+            field = descriptor.getField(getPropertyName(unserializeKey(
+                String.class).toString()));
+            if (field == null)
+                unserializeValue(Object.class);
+            else
+                field.setValue(object, unserializeValue(field.getGenericType()));
+        }
+        return object;
+    }
+
+
+    /**
+     * Unserializes an array key into the specified type. Keys don't occupy
+     * a reference slot.
+     *
+     * @param type
+     *            The key type
+     * @return The key
+     */
+
+    private Object unserializeKey(final Type type)
+    {
+        this.parser.nextToken();
+        if (this.parser.isIntegerKey())
+            return Converter.convert(Integer.valueOf(this.parser.getInt()),
+                Converter.getRawType(type));
+        return Converter.convert(getStringKey().toString(), Converter
+            .getRawType(type));
+    }
+
+
+    /**
+     * Unserializes the next PHP object in the data stream into the specified
+     * type. When the type is Object then the class registry is used to find
+     * the Java class.
+     *
+     * @param type
+     *            The target type
+     * @param rawType
+     *            The raw target type
+     * @return The unserialized object
+     */
+
+    private Object unserializePhpObject(final Type type, final Class<?> rawType)
+    {
+        String className;
+        Class<?> registeredType;
+        int max;
+
+        className = this.parser.getClassName();
+        max = this.parser.getSize();
+        if (rawType != Object.class)
+            return unserializeArray(type, rawType, max);
+
+        registeredType = this.classRegistry == null ? null : this.classRegistry
+            .lookup(className);
+        if (registeredType != null)
+            return unserializeArray(registeredType, registeredType, max);
+        return unserializeMixedObject(className, max).getValue();
+    }
+
+
+    /**
+     * Unserializes the next array key or property name in the data stream.
+     * Keys don't occupy a reference slot.
+     *
+     * @return The unserialized key
+     */
+
+    private Mixed unserializeKey()
+    {
+        this.parser.nextToken();
+        if (this.parser.isIntegerKey())
+            return Mixed.valueOf(this.parser.getInt());
+        return getStringKey();
+    }
+
+
+    /**
+     * Returns the current string key. The key is looked up in the key cache
+     * if one is set.
+     *
+     * @return The string key
+     */
+
+    private Mixed getStringKey()
+    {
+        if (this.keyCache == null) return new Mixed(this.parser.getString());
+        return this.keyCache.lookup(this.parser.data, this.parser
+            .getStringOffset(), this.parser.getStringLength(), this.charset);
+    }
+
+
+    /**
+     * Reads the next array key or property name directly from the data
+     * without the token state of the parser. String keys are looked up in
+     * the key cache if one is set.
+     *
+     * @return The key
+     */
+
+    private Mixed readKey()
+    {
+        Mixed key;
+        char type;
+
+        type = (char) this.parser.next();
+        this.parser.skip(1);
+        if (type == 'i') return Mixed.valueOf(this.parser.readInt(';'));
+        if (type != 's')
+            throw new UnserializeException("Invalid key type " + type);
+        if (this.keyCache == null)
+            key = new Mixed(this.parser.readString());
+        else
+            key = readCachedString();
+        this.parser.skip(1);
+        return key;
+    }
+
+
+    /**
+     * Reads a length-prefixed quoted string (<length>:"<string>") through
+     * the key cache and moves the data pointer behind the closing quote.
+     *
+     * @return The string
+     */
+
+    private Mixed readCachedString()
+    {
+        int length;
+        Mixed result;
+
+        length = this.parser.readInt(':');
+        this.parser.skip(1);
+        if (length < 0 || !this.parser.require(length))
+            throw new UnserializeException("Unexpected end of data");
+        result = this.keyCache.lookup(this.parser.data, this.parser.pos, length,
+            this.charset);
+        this.parser.pos += length;
+        this.parser.skip(1);
+        return result;
+    }
+
+
+    /**
+     * Unserializes the current array in the data stream. Arrays
+     * with consecutive integer keys starting with 0 stay in the packed mode
+     * of the MixedArray. The array switches to hash mode on the first key
+     * which doesn't continue the sequence.
+     *
+     * @return The unserialized array
+     */
+
+    private Mixed unserializeArray()
+    {
+        Mixed result;
+        MixedArray array;
+        int max;
+        int i;
+        Object key, value;
+
+        max = this.parser.getSize();
+        array = new MixedArray(max);
+        result = new Mixed(array);
+        this.history.add(result);
+        for (i = 0; i < max; i++)
+        {
+            key = unserializeKey();
+            value = unserializeValue();
+            array.put(key, value);
+        }
+        this.parser.nextToken();
+        return result;
+    }
+
+
+    /**
+     * Unserializes the current PHP object in the data stream. If
+     * the PHP class is registered in the class registry then an instance of
+     * the registered Java class is created and its fields are populated from
+     * the object properties. Otherwise a MixedObject is returned.
+     *
+     * @return The unserialized object
+     */
+
+    private Mixed unserializePhpObject()
+    {
+        String className;
+        Class<?> type;
+        int max;
+
+        className = this.parser.getClassName();
+        max = this.parser.getSize();
+        type = this.classRegistry == null ? null : this.classRegistry
+            .lookup(className);
+        if (type == null)
+            return unserializeMixedObject(className, max);
+        else
+            return unserializeBoundObject(ClassDescriptor.forClass(type), max);
+    }
+
+
+    /**
+     * Unserializes the properties of a PHP object into a new instance of the
+     * described class.
+     *
+     * @param descriptor
+     *            The descriptor of the Java class
+     * @param max
+     *            The number of properties
+     * @return The unserialized object
+     */
+
+    private Mixed unserializeBoundObject(final ClassDescriptor descriptor,
+        final int max)
+    {
+        Mixed result;
+        Object object;
+        FieldDescriptor field;
+        Mixed key, value;
+        int i;
+
+        object = descriptor.newInstance();
+        result = new Mixed(object);
+        this.history.add(result);
+        for (i = 0; i < max; i++)
+        {
+            key = unserializeKey();
+            value = unserializeValue();
+            field = descriptor.getField(getPropertyName(key));
+            if (field != null) field.set(object, value);
+        }
+        this.parser.nextToken();
+        return result;
+    }
+
+
+    /**
+     * Unserializes the properties of a PHP object of an unregistered class
+     * into a MixedObject. The property names are kept including their
+     * visibility prefixes so the object can be serialized unchanged.
+     *
+     * @param className
+     *            The PHP class name
+     * @param max
+     *            The number of properties
+     * @return The unserialized object
+     */
+
+    private Mixed unserializeMixedObject(final String className, final int max)
+    {
+        Mixed result;
+        MixedObject object;
+        Mixed key, value;
+        int i;
+
+        object = new MixedObject(className, max);
+        result = new Mixed(object);
+        this.history.add(result);
+        for (i = 0; i < max; i++)
+        {
+            key = unserializeKey();
+            value = unserializeValue();
+            object.put(key, value);
+        }
+        this.parser.nextToken();
+        return result;
+    }
+
+
+    /**
+     * Returns the property name from the specified serialized property key.
+     * PHP prefixes the names of private properties with the class name and
+     * the names of protected properties with an asterisk, both enclosed in
+     * null bytes. This prefix is removed.
+     *
+     * @param key
+     *            The serialized property key
+     * @return The property name
+     */
+
+    private static String getPropertyName(final Mixed key)
+    {
+        return getPropertyName(key.toString());
+    }
+
+
+    /**
+     * Returns the property name from the specified serialized property key
+     * name.
+     *
+     * @param name
+     *            The serialized property key name
+     * @return The property name
+     */
+
+    static String getPropertyName(final String name)
+    {
+        if (name.length() > 0 && name.charAt(0) == 0)
+            return name.substring(name.lastIndexOf(0) + 1);
+        return name;
+    }
+
+
+    /**
+     * Scans the next object in the data and returns its lazily decoded
+     * value.
+     *
+     * @return The unserialized object
+     */
+
+    private Mixed unserializeLazy()
+    {
+        LazyDocument document;
+
+        if (!this.parser.isInMemory())
+            throw new UnserializeException(
+                "Lazy unserialization requires in-memory data");
+        document = new LazyDocument(this.parser.data, this.parser.end);
+        scanValue(document);
+        return decodeLazyValue(document, 0);
+    }
+
+
+    /**
+     * Scans the next value in the data and records the offsets and sizes of
+     * its reference slot and the slots of all contained values. The data
+     * pointer is moved behind the value.
+     *
+     * @param document
+     *            The document to record the slots in
+     */
+
+    private void scanValue(final LazyDocument document)
+    {
+        int slot;
+        int index;
+        char type;
+
+        slot = document.add(this.parser.pos);
+        type = (char) this.parser.next();
+        this.parser.skip(1);
+        switch (type)
+        {
+            case 's':
+                this.parser.skipString();
+                this.parser.skip(1);
+                break;
+
+            case 'N':
+                // The terminator has already been skipped
+                break;
+
+            case 'i':
+            case 'd':
+            case 'b':
+                this.parser.pos = this.parser.find(';') + 1;
+                break;
+
+            case 'R':
+            case 'r':
+                index = this.parser.readInt(';');
+                if (index < 1 || index > slot)
+                    throw new UnserializeException("Invalid reference "
+                        + index);
+                break;
+
+            case 'O':
+                this.parser.skipString();
+                this.parser.skip(1);
+                scanEntries(document);
+                break;
+
+            case 'a':
+                scanEntries(document);
+                break;
+
+            default:
+                throw new UnserializeException(
+                    "Unable to unserialize unknown type " + type);
+        }
+        document.close(slot, this.parser.pos);
+    }
+
+
+    /**
+     * Scans the entries of an array or the properties of an object including
+     * the closing brace. The data pointer must be positioned at the number
+     * of entries.
+     *
+     * @param document
+     *            The document to record the slots in
+     */
+
+    private void scanEntries(final LazyDocument document)
+    {
+        int max;
+        int i;
+
+        max = this.parser.readInt(':');
+        this.parser.skip(1);
+        for (i = 0; i < max; i++)
+        {
+            this.parser.skipKey();
+            scanValue(document);
+        }
+        this.parser.skip(1);
+    }
+
+
+    /**
+     * Skips the next value in the data and counts the reference slots of
+     * the value and all contained values.
+     *
+     * @param slot
+     *            The reference slot of the value
+     * @param first
+     *            The first reference slot of the top-level array element
+     *            containing the value
+     * @return The number of reference slots. -1 if the value references a
+     *         slot outside of the top-level array element other than the
+     *         slot of the array itself
+     */
+
+    private int scanSlots(final int slot, final int first)
+    {
+        int index;
+        char type;
+
+        type = (char) this.parser.next();
+        this.parser.skip(1);
+        switch (type)
+        {
+            case 's':
+                this.parser.skipString();
+                this.parser.skip(1);
+                return 1;
+
+            case 'N':
+                // The terminator has already been skipped
+                return 1;
+
+            case 'i':
+            case 'd':
+            case 'b':
+                this.parser.pos = this.parser.find(';') + 1;
+                return 1;
+
+            case 'R':
+            case 'r':
+                index = this.parser.readInt(';');
+                return index == 1 || (index >= first && index < slot) ? 1
+                    : -1;
+
+            case 'O':
+                this.parser.skipString();
+                this.parser.skip(1);
+                return scanEntrySlots(slot, first);
+
+            case 'a':
+                return scanEntrySlots(slot, first);
+
+            default:
+                throw new UnserializeException(
+                    "Unable to unserialize unknown type " + type);
+        }
+    }
+
+
+    /**
+     * Skips the entries of an array or the properties of an object including
+     * the closing brace and counts the reference slots of the array or
+     * object and all contained values. The data pointer must be positioned
+     * at the number of entries.
+     *
+     * @param slot
+     *            The reference slot of the array or object
+     * @param first
+     *            The first reference slot of the top-level array element
+     *            containing the array or object
+     * @return The number of reference slots. -1 if a value references a slot
+     *         outside of the top-level array element other than the slot of
+     *         the array itself
+     */
+
+    private int scanEntrySlots(final int slot, final int first)
+    {
+        int count;
+        int max;
+        int index;
+        int i;
+
+        max = this.parser.readInt(':');
+        this.parser.skip(1);
+        count = 1;
+        for (i = 0; i < max; i++)
+        {
+            this.parser.skipKey();
+            index = scanSlots(slot + count, first);
+            if (index < 0) return -1;
+            count += index;
+        }
+        this.parser.skip(1);
+        return count;
+    }
+
+
+    /**
+     * Returns the array element or object property with the specified name
+     * of an unserialized value. Properties of PHP objects are looked up by
+     * their names without visibility prefix like in the serialized data.
+     *
+     * @param value
+     *            The unserialized array or object
+     * @param name
+     *            The array key or property name
+     * @return The element or property or null if there is no such element or
+     *         property
+     */
+
+    private static Mixed getChild(final Mixed value, final String name)
+    {
+        MixedArray array;
+        Object object;
+        FieldDescriptor field;
+
+        if (value.isArray())
+        {
+            array = value.toArray();
+            if (array instanceof MixedObject)
+                return ((MixedObject) array).getProperty(name);
+            return (Mixed) array.get(name);
+        }
+        object = value.getValue();
+        if (value.getType() != Mixed.TYPE_UNKNOWN || object == null)
+            return null;
+        field = ClassDescriptor.forClass(object.getClass()).getField(name);
+        if (field == null) return null;
+        return Mixed.valueOf(field.getAccessor().get(object));
+    }
+
+
+    /**
+     * Walks through the next value in the data along the specified path
+     * and moves the data pointer behind the value. The position of the
+     * value at the end of the path (or of a reference on the path) is
+     * recorded in extractStart.
+     *
+     * @param names
+     *            The encoded path elements
+     * @param indices
+     *            The path elements as integer keys. Long.MIN_VALUE for
+     *            path elements which are no integer keys
+     * @param depth
+     *            The index of the path element to search in the value
+     */
+
+    private void locate(final byte[][] names, final long[] indices,
+        final int depth)
+    {
+        boolean object;
+        boolean matches;
+        int max;
+        int i;
+        char type;
+
+        type = (char) this.parser.peek();
+        if (type != 'a' && type != 'O')
+        {
+            // A reference on the path can only be followed in the
+            // unserialized value
+            if (type == 'R' || type == 'r')
+            {
+                this.extractStart = this.parser.pos;
+                this.extractReferences = true;
+            }
+            this.parser.skipData();
+            return;
+        }
+        this.parser.skip(2);
+        object = type == 'O';
+        if (object)
+        {
+            this.parser.skipString();
+            this.parser.skip(1);
+        }
+        max = this.parser.readInt(':');
+        this.parser.skip(1);
+        for (i = 0; i < max; i++)
+        {
+            if (this.extractStart < 0)
+                matches = matchKey(names[depth], indices[depth], object);
+            else
+            {
+                this.parser.skipKey();
+                matches = false;
+            }
+            if (!matches)
+                this.parser.skipData();
+            else if (depth + 1 < names.length)
+                locate(names, indices, depth + 1);
+            else
+            {
+                this.extractStart = this.parser.pos;
+                this.extractReferences = this.parser.skipData();
+            }
+        }
+        this.parser.skip(1);
+    }
+
+
+    /**
+     * Reads the next array key or property name in the data, moves the data
+     * pointer behind it and checks if it matches the specified path element.
+     * The key is compared in its encoded form without decoding it.
+     *
+     * @param name
+     *            The encoded path element
+     * @param index
+     *            The path element as integer key. Long.MIN_VALUE if it is
+     *            no integer key
+     * @param property
+     *            If the key is a property name which may have a visibility
+     *            prefix
+     * @return True if the key matches, false if not
+     */
+
+    private boolean matchKey(final byte[] name, final long index,
+        final boolean property)
+    {
+        int length;
+        int off, len;
+        int i;
+        char type;
+
+        type = (char) this.parser.next();
+        this.parser.skip(1);
+        if (type == 'i')
+            return this.parser.readLong(';') == index
+                && index != Long.MIN_VALUE;
+        if (type != 's')
+            throw new UnserializeException("Invalid key type " + type);
+        length = this.parser.readInt(':');
+        if (length < 0 || length > this.parser.end - this.parser.pos - 2)
+            throw new UnserializeException("Unexpected end of data");
+        off = this.parser.pos + 1;
+        len = length;
+        if (property && len > 0 && this.parser.data[off] == 0)
+        {
+            for (i = off + len - 1; this.parser.data[i] != 0; i--)
+            {
+                // Empty
+            }
+            len -= i + 1 - off;
+            off = i + 1;
+        }
+        this.parser.pos += length + 2;
+        this.parser.skip(1);
+        if (len != name.length) return false;
+        for (i = 0; i < len; i++)
+        {
+            if (this.parser.data[off + i] != name[i]) return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Parses the specified path element as an integer array key. Like in
+     * PHP only the canonical decimal form is an integer key.
+     *
+     * @param key
+     *            The path element
+     * @return The integer key or Long.MIN_VALUE if the path element is no
+     *         integer key
+     */
+
+    private static long parseIndex(final String key)
+    {
+        long value;
+
+        try
+        {
+            value = Long.parseLong(key);
+        }
+        catch (final NumberFormatException e)
+        {
+            return Long.MIN_VALUE;
+        }
+        return Long.toString(value).equals(key) ? value : Long.MIN_VALUE;
+    }
+
+
+    /**
+     * Returns the decoded value of the specified reference slot of a
+     * scanned document. The value is decoded on first access and cached in
+     * the document. The value is read from the data of the document, so the
+     * unserializer may already have been reset to other data. The data
+     * pointer is not changed.
+     *
+     * @param document
+     *            The scanned document
+     * @param slot
+     *            The reference slot
+     * @return The decoded value
+     */
+
+    Mixed decodeLazyValue(final LazyDocument document, final int slot)
+    {
+        Object cached;
+        Mixed result;
+        byte[] oldData;
+        int oldPos, oldEnd;
+        char type;
+
+        cached = document.values[slot];
+        if (cached != null)
+            return cached == LazyDocument.NULL ? null : (Mixed) cached;
+        oldData = this.parser.data;
+        oldPos = this.parser.pos;
+        oldEnd = this.parser.end;
+        this.parser.data = document.data;
+        this.parser.pos = document.offsets[slot];
+        this.parser.end = document.end;
+        try
+        {
+            type = (char) this.parser.next();
+            this.parser.skip(1);
+            result = decodeLazyValue(document, slot, type);
+        }
+        finally
+        {
+            this.parser.data = oldData;
+            this.parser.pos = oldPos;
+            this.parser.end = oldEnd;
+        }
+        document.values[slot] = result == null ? LazyDocument.NULL : result;
+        return result;
+    }
+
+
+    /**
+     * Decodes the value of the specified reference slot of a scanned
+     * document. The data pointer must be positioned behind the type prefix
+     * of the value in the data of the document.
+     *
+     * @param document
+     *            The scanned document
+     * @param slot
+     *            The reference slot
+     * @param type
+     *            The type of the value
+     * @return The decoded value
+     */
+
+    private Mixed decodeLazyValue(final LazyDocument document, final int slot,
+        final char type)
+    {
+        Mixed result;
+
+        switch (type)
+        {
+            case 's':
+                result = new Mixed(this.parser.readString());
+                this.parser.skip(1);
+                break;
+
+            case 'i':
+                result = Mixed.valueOf(this.parser.readInt(';'));
+                break;
+
+            case 'd':
+                result = new Mixed(this.parser.readDouble());
+                break;
+
+            case 'b':
+                result = Mixed.valueOf(this.parser.next() == '1');
+                this.parser.skip(1);
+                break;
+
+            case 'N':
+                result = null;
+                break;
+
+            case 'R':
+            case 'r':
+                result = decodeLazyValue(document, this.parser.readInt(';') - 1);
+                break;
+
+            case 'a':
+                result = new Mixed(new LazyMixedArray(this, document, slot));
+                break;
+
+            default:
+                result = decodeLazyObject(document, slot);
+        }
+        return result;
+    }
+
+
+    /**
+     * Decodes the PHP object in the specified reference slot of a scanned
+     * document. The data pointer must be positioned behind the type prefix.
+     * The properties are decoded immediately.
+     *
+     * @param document
+     *            The scanned document
+     * @param slot
+     *            The reference slot of the object
+     * @return The decoded object
+     */
+
+    private Mixed decodeLazyObject(final LazyDocument document, final int slot)
+    {
+        String className;
+        Class<?> type;
+        ClassDescriptor descriptor;
+        FieldDescriptor field;
+        MixedObject mixedObject;
+        Object object;
+        Mixed result, key, value;
+        int max;
+        int child;
+        int i;
+
+        className = this.parser.readString();
+        this.parser.skip(1);
+        max = this.parser.readInt(':');
+        this.parser.skip(1);
+        type = this.classRegistry == null ? null : this.classRegistry
+            .lookup(className);
+        descriptor = null;
+        mixedObject = null;
+        if (type == null)
+        {
+            mixedObject = new MixedObject(className, max);
+            object = mixedObject;
+        }
+        else
+        {
+            descriptor = ClassDescriptor.forClass(type);
+            object = descriptor.newInstance();
+        }
+        result = new Mixed(object);
+        document.values[slot] = result;
+        child = slot + 1;
+        for (i = 0; i < max; i++)
+        {
+            key = readKey();
+            value = decodeLazyValue(document, child);
+            if (descriptor == null)
+            {
+                mixedObject.put(key, value);
+            }
+            else
+            {
+                field = descriptor.getField(getPropertyName(key));
+                if (field != null) field.set(object, value);
+            }
+            this.parser.pos = document.ends[child];
+            child += document.sizes[child] + 1;
+        }
+        return result;
+    }
+
+
+    /**
+     * Decodes the entries of a lazy array. Called by the lazy array on first
+     * access. The entries are read from the data of the document. The data
+     * pointer is not changed.
+     *
+     * @param array
+     *            The lazy array to fill
+     * @param document
+     *            The scanned document
+     * @param slot
+     *            The reference slot of the array
+     */
+
+    void loadLazyArray(final MixedArray array, final LazyDocument document,
+        final int slot)
+    {
+        byte[] oldData;
+        int oldPos, oldEnd;
+        int max;
+        int child;
+        int i;
+        Mixed key;
+
+        oldData = this.parser.data;
+        oldPos = this.parser.pos;
+        oldEnd = this.parser.end;
+        this.parser.data = document.data;
+        this.parser.pos = document.offsets[slot] + 2;
+        this.parser.end = document.end;
+        try
+        {
+            max = this.parser.readInt(':');
+            this.parser.skip(1);
+            child = slot + 1;
+            for (i = 0; i < max; i++)
+            {
+                key = readKey();
+                array.put(key, decodeLazyValue(document, child));
+                this.parser.pos = document.ends[child];
+                child += document.sizes[child] + 1;
+            }
+        }
+        finally
+        {
+            this.parser.data = oldData;
+            this.parser.pos = oldPos;
+            this.parser.end = oldEnd;
+        }
+    }
+
+
+    /**
+     * The reference slots of a scanned object used for lazy unserialization.
+     * Each value (but not the array keys) occupies a slot in the order of
+     * appearance, like in the reference history of PHP. The slots of the
+     * values contained in an array or object directly follow the slot of the
+     * array or object.
+     */
+
+    static final class LazyDocument
+    {
+        /** Marker for decoded null values */
+        static final Object NULL = new Object();
+
+        /** The scanned data */
+        final byte[] data;
+
+        /** The end offset (exclusive) of the scanned data */
+        final int end;
+
+        /** The start offsets of the values in the data */
+        int[] offsets = new int[16];
+
+        /** The end offsets (exclusive) of the values in the data */
+        int[] ends = new int[16];
+
+        /** The number of slots contained in the values */
+        int[] sizes = new int[16];
+
+        /** The decoded values. Null if not decoded yet */
+        Object[] values;
+
+        /** The number of slots */
+        int count;
+
+
+        /**
+         * Constructor
+         *
+         * @param data
+         *            The scanned data
+         * @param end
+         *            The end offset (exclusive) of the scanned data
+         */
+
+        LazyDocument(final byte[] data, final int end)
+        {
+            super();
+            this.data = data;
+            this.end = end;
+        }
+
+
+        /**
+         * Adds a new slot.
+         *
+         * @param offset
+         *            The start offset of the value in the data
+         * @return The slot
+         */
+
+        int add(final int offset)
+        {
+            if (this.count == this.offsets.length)
+            {
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+                this.ends = Arrays.copyOf(this.ends, this.count * 2);
+                this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+            }
+            this.offsets[this.count] = offset;
+            return this.count++;
+        }
+
+
+        /**
+         * Completes the specified slot after the value and all contained
+         * values have been scanned. Creates the value cache when the root
+         * slot is completed.
+         *
+         * @param slot
+         *            The slot
+         * @param end
+         *            The end offset (exclusive) of the value in the data
+         */
+
+        void close(final int slot, final int end)
+        {
+            this.ends[slot] = end;
+            this.sizes[slot] = this.count - slot - 1;
+            if (slot == 0) this.values = new Object[this.count];
+        }
+    }
+
+
+    /**
+     * A range of top-level array elements decoded by its own unserializer
+     * in a pool thread.
+     */
+
+    private static final class Chunk extends RecursiveAction
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1L;
+
+        /** The unserializer of the whole array */
+        final Unserializer source;
+
+        /** The array itself. Occupies the root reference slot */
+        final Mixed root;
+
+        /** The start offsets of the elements and the end offset of the last */
+        final int[] offsets;
+
+        /** The first reference slots of the elements */
+        final int[] slots;
+
+        /** The index of the first element of the chunk */
+        final int from;
+
+        /** The index after the last element of the chunk */
+        final int to;
+
+        /** The decoded keys */
+        Mixed[] keys;
+
+        /** The decoded values */
+        Mixed[] values;
+
+
+        /**
+         * Constructor
+         *
+         * @param source
+         *            The unserializer of the whole array
+         * @param root
+         *            The array itself
+         * @param offsets
+         *            The start offsets of the elements and the end offset
+         *            of the last element
+         * @param slots
+         *            The first reference slots of the elements
+         * @param from
+         *            The index of the first element of the chunk
+         * @param to
+         *            The index after the last element of the chunk
+         */
+
+        Chunk(final Unserializer source, final Mixed root,
+            final int[] offsets, final int[] slots, final int from,
+            final int to)
+        {
+            super();
+            this.source = source;
+            this.root = root;
+            this.offsets = offsets;
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        /**
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+
+        @Override
+        protected void compute()
+        {
+            Unserializer unserializer;
+            Mixed[] keys, values;
+            int i;
+
+            unserializer = new Unserializer(this.source.parser.data,
+                this.offsets[this.from], this.offsets[this.to]
+                    - this.offsets[this.from], this.source.charset);
+            unserializer.classRegistry = this.source.classRegistry;
+            if (this.source.keyCache != null)
+                unserializer.keyCache = new KeyCache();
+            unserializer.history.add(this.root);
+            unserializer.historyOffset = this.slots[this.from] - 2;
+            keys = new Mixed[this.to - this.from];
+            values = new Mixed[this.to - this.from];
+            for (i = 0; i < keys.length; i++)
+            {
+                keys[i] = unserializer.readKey();
+                values[i] = unserializer.unserializeValue();
+            }
+            this.keys = keys;
+            this.values = values;
         }
     }
 }
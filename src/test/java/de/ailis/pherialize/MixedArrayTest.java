@@ -23,11 +23,23 @@
 
 package de.ailis.pherialize;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import de.ailis.pherialize.test.LegacyMixedArray;
 
 
 /**
@@ -132,4 +144,301 @@ public class MixedArrayTest extends TestCase
         this.map.remove(new Mixed("3"));
         assertEquals(2, this.map.size());
     }
+
+
+    /**
+     * Tests the packed mode of arrays with consecutive integer keys
+     */
+
+    public void testPacked()
+    {
+        MixedArray array;
+        Iterator<Map.Entry<Object, Object>> iterator;
+        Map.Entry<Object, Object> entry;
+
+        array = new MixedArray(Arrays.asList("a", "b", "c"));
+        assertTrue(array.isPacked());
+        assertEquals(3, array.size());
+        assertEquals("b", array.getString(1));
+        assertEquals("c", array.getString("2"));
+        assertNull(array.get(3));
+        assertNull(array.get(-1));
+
+        array.put(Integer.valueOf(3), "d");
+        array.put(new Mixed("0"), "A");
+        assertTrue(array.isPacked());
+        assertEquals("A", array.getString(0));
+        assertEquals(4, array.size());
+
+        array.remove(Integer.valueOf(1));
+        assertTrue(array.isPacked());
+        assertEquals(3, array.size());
+        assertFalse(array.containsKey(1));
+        iterator = array.entrySet().iterator();
+        entry = iterator.next();
+        assertEquals(new Mixed(0), entry.getKey());
+        entry = iterator.next();
+        assertEquals(new Mixed(2), entry.getKey());
+        iterator.remove();
+        assertEquals(new Mixed(3), iterator.next().getKey());
+        assertFalse(iterator.hasNext());
+        assertEquals(2, array.size());
+        assertEquals("a:2:{i:0;s:1:\"A\";i:3;s:1:\"d\";}",
+            Pherialize.serialize(array));
+    }
+
+
+    /**
+     * Tests switching from packed mode to hash mode
+     */
+
+    public void testUnpack()
+    {
+        MixedArray array, copy;
+
+        array = new MixedArray(Arrays.asList("a", "b"));
+        copy = (MixedArray) array.clone();
+        array.put(Integer.valueOf(5), "f");
+        assertFalse(array.isPacked());
+        array.put("key", "value");
+        assertEquals("a", array.getString(0));
+        assertEquals("b", array.getString("1"));
+        assertEquals("f", array.getString(5));
+        assertEquals("value", array.getString("key"));
+        assertEquals(
+            "a:4:{i:0;s:1:\"a\";i:1;s:1:\"b\";i:5;s:1:\"f\";s:3:\"key\";s:5:\"value\";}",
+            Pherialize.serialize(array));
+        assertTrue(copy.isPacked());
+        assertEquals(2, copy.size());
+        assertEquals(copy, new MixedArray(Arrays.asList("a", "b")));
+
+        array.clear();
+        assertTrue(array.isPacked());
+        assertTrue(array.isEmpty());
+    }
+
+
+    /**
+     * Tests that unserialized lists are packed
+     */
+
+    public void testUnserializePacked()
+    {
+        assertTrue(Pherialize.unserialize(
+            "a:2:{i:0;s:1:\"a\";i:1;a:0:{}}").toArray().isPacked());
+        assertFalse(Pherialize.unserialize(
+            "a:2:{i:1;s:1:\"a\";i:0;a:0:{}}").toArray().isPacked());
+        assertFalse(Pherialize.unserialize(
+            "a:1:{s:1:\"0\";s:1:\"a\";}").toArray().isPacked());
+    }
+
+
+    /**
+     * Tests the hash mode against a LinkedHashMap with random operations
+     */
+
+    public void testHashMode()
+    {
+        MixedArray array;
+        Map<String, String> expected;
+        Random random;
+        Iterator<Map.Entry<Object, Object>> iterator;
+        Iterator<Map.Entry<String, String>> expectedIterator;
+        Map.Entry<Object, Object> entry;
+        Map.Entry<String, String> expectedEntry;
+        String key;
+        Object removed;
+        int i;
+
+        array = new MixedArray();
+        array.put("first", "value");
+        expected = new LinkedHashMap<String, String>();
+        expected.put("first", "value");
+        random = new Random(42);
+        for (i = 0; i < 20000; i++)
+        {
+            key = random.nextBoolean() ? Integer.toString(random.nextInt(2000)
+                - 1000) : "key" + random.nextInt(2000);
+            if (random.nextInt(3) == 0)
+            {
+                removed = array.remove(key);
+                assertEquals(expected.remove(key), removed == null ? null
+                    : removed.toString());
+            }
+            else
+            {
+                expected.put(key, "value" + i);
+                if (random.nextBoolean() && !key.startsWith("k"))
+                    array.put(Integer.valueOf(key), "value" + i);
+                else
+                    array.put(key, "value" + i);
+            }
+            assertEquals(expected.size(), array.size());
+        }
+        assertFalse(array.isPacked());
+        iterator = array.entrySet().iterator();
+        expectedIterator = expected.entrySet().iterator();
+        while (expectedIterator.hasNext())
+        {
+            expectedEntry = expectedIterator.next();
+            entry = iterator.next();
+            assertEquals(expectedEntry.getKey(), entry.getKey().toString());
+            assertEquals(expectedEntry.getValue(), entry.getValue().toString());
+            assertEquals(expectedEntry.getValue(), array.getString(
+                new Mixed(expectedEntry.getKey())));
+        }
+        assertFalse(iterator.hasNext());
+        assertEquals("value", array.getString("first"));
+        assertNull(array.get("-0"));
+        assertNull(array.get("01"));
+    }
+
+
+    /**
+     * Serializes the specified object with Java serialization.
+     *
+     * @param object
+     *            The object to serialize
+     * @return The serialized data
+     * @throws IOException
+     *             When serialization fails
+     */
+
+    private static byte[] javaSerialize(final Object object)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes;
+        ObjectOutputStream stream;
+
+        bytes = new ByteArrayOutputStream();
+        stream = new ObjectOutputStream(bytes);
+        stream.writeObject(object);
+        stream.close();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Unserializes the specified data with Java serialization.
+     *
+     * @param data
+     *            The serialized data
+     * @return The unserialized object
+     * @throws IOException
+     *             When unserialization fails
+     * @throws ClassNotFoundException
+     *             When a class could not be found
+     */
+
+    private static Object javaUnserialize(final byte[] data)
+        throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream stream;
+
+        stream = new ObjectInputStream(new ByteArrayInputStream(data));
+        try
+        {
+            return stream.readObject();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+
+    /**
+     * Replaces the length prefixed (modified UTF-8) string search with
+     * the string replace in the specified Java serialized data.
+     *
+     * @param data
+     *            The serialized data
+     * @param search
+     *            The string to search
+     * @param replace
+     *            The replacement string
+     * @return The patched data
+     */
+
+    private static byte[] replaceUTF(final byte[] data, final String search,
+        final String replace)
+    {
+        byte[] from, to, result;
+        int i;
+
+        from = search.getBytes(StandardCharsets.US_ASCII);
+        to = replace.getBytes(StandardCharsets.US_ASCII);
+        for (i = 2; i + from.length <= data.length; i++)
+        {
+            if (data[i - 1] != from.length
+                || !Arrays.equals(from, Arrays.copyOfRange(data, i, i
+                    + from.length))) continue;
+            result = new byte[data.length - from.length + to.length];
+            System.arraycopy(data, 0, result, 0, i - 2);
+            result[i - 2] = (byte) (to.length >> 8);
+            result[i - 1] = (byte) to.length;
+            System.arraycopy(to, 0, result, i, to.length);
+            System.arraycopy(data, i + from.length, result, i + to.length,
+                data.length - i - from.length);
+            return result;
+        }
+        throw new IllegalArgumentException("Not found: " + search);
+    }
+
+
+    /**
+     * Tests Java serialization of packed and hashed arrays.
+     *
+     * @throws Exception
+     *             When test fails
+     */
+
+    public void testJavaSerialization() throws Exception
+    {
+        MixedArray array, copy;
+        MixedObject object, objectCopy;
+
+        array = (MixedArray) this.map;
+        copy = (MixedArray) javaUnserialize(javaSerialize(array));
+        assertTrue(copy.isPacked() == array.isPacked());
+        assertEquals(array, copy);
+        copy.put("key", "value");
+        assertFalse(copy.isPacked());
+        assertEquals(copy, javaUnserialize(javaSerialize(copy)));
+
+        object = new MixedObject("Foo");
+        object.put("\0*\0bar", 1);
+        objectCopy = (MixedObject) javaUnserialize(javaSerialize(object));
+        assertEquals("Foo", objectCopy.getClassName());
+        assertEquals(1, objectCopy.getProperty("bar").toInt());
+    }
+
+
+    /**
+     * Tests that the serialized form of the old LinkedHashMap based
+     * MixedArray is rejected instead of producing a broken array.
+     *
+     * @throws Exception
+     *             When test fails
+     */
+
+    public void testJavaSerializationLegacy() throws Exception
+    {
+        LegacyMixedArray legacy;
+        byte[] data;
+
+        legacy = new LegacyMixedArray();
+        legacy.put(new Mixed(0), new Mixed("value"));
+        data = replaceUTF(javaSerialize(legacy),
+            LegacyMixedArray.class.getName(), MixedArray.class.getName());
+        try
+        {
+            javaUnserialize(data);
+            fail("Expected InvalidClassException");
+        }
+        catch (final InvalidClassException e)
+        {
+            assertEquals(MixedArray.class.getName(), e.classname);
+        }
+    }
 }
@@ -23,6 +23,10 @@
 
 package de.ailis.pherialize;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -593,4 +597,100 @@ public class MixedTest extends TestCase
         assertEquals("BLUE", mixed.toString());
         assertNull(mixed.toArray());
     }
+
+
+    /**
+     * Tests equality and hash codes of mixed values following PHP key
+     * semantics.
+     */
+
+    public void testEqualsAndHashCode()
+    {
+        long[] values = { 0, 5, -5, 42, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Long.MAX_VALUE, Long.MIN_VALUE };
+        Mixed number, string;
+
+        for (final long value: values)
+        {
+            number = new Mixed(value);
+            string = new Mixed(Long.toString(value));
+            assertEquals(string, number);
+            assertEquals(number, string);
+            assertEquals(string.hashCode(), number.hashCode());
+            assertEquals(number, Long.toString(value));
+        }
+        assertEquals(new Mixed(5), new Mixed(5L));
+        assertEquals(new Mixed(5).hashCode(), new Mixed((byte) 5).hashCode());
+        assertFalse(new Mixed(5).equals(new Mixed("05")));
+        assertFalse(new Mixed(5).equals(new Mixed("5 ")));
+        assertFalse(new Mixed(-5).equals(new Mixed("5")));
+        assertFalse(new Mixed(5).equals(new Mixed("")));
+        assertEquals(new Mixed('x'), new Mixed("x"));
+        assertEquals(new Mixed("x").hashCode(), new Mixed('x').hashCode());
+        assertEquals(new Mixed(true), new Mixed("true"));
+        assertEquals(new Mixed((Object) null), new Mixed((Object) null));
+        assertFalse(new Mixed((Object) null).equals(new Mixed("")));
+        assertEquals(0, new Mixed((Object) null).hashCode());
+    }
+
+
+    /**
+     * Tests the cached mixed values.
+     */
+
+    public void testValueOf()
+    {
+        MixedArray array;
+
+        assertSame(Mixed.valueOf(-128), Mixed.valueOf(-128));
+        assertSame(Mixed.valueOf(1023), Mixed.valueOf(1023));
+        assertNotSame(Mixed.valueOf(1024), Mixed.valueOf(1024));
+        assertEquals(1024, Mixed.valueOf(1024).toInt());
+        assertEquals(Mixed.TYPE_INT, Mixed.valueOf(5).getType());
+        assertSame(Mixed.valueOf(true), Mixed.valueOf(Boolean.TRUE));
+        assertFalse(Mixed.valueOf(false).toBoolean());
+        assertSame(Mixed.valueOf((Object) null), Mixed.valueOf((Object) null));
+        assertNull(Mixed.valueOf((Object) null).getValue());
+
+        array = Pherialize.unserialize("a:2:{i:0;i:7;i:1;b:1;}").toArray();
+        assertSame(Mixed.valueOf(7), array.get(0));
+        assertSame(Mixed.valueOf(true), array.get(1));
+        assertSame(Mixed.valueOf(1), array.keySet().toArray()[1]);
+    }
+
+
+    /**
+     * Tests the direct conversions of primitive mixed values.
+     */
+
+    public void testPrimitiveConversions() throws Exception
+    {
+        Mixed mixed;
+        ByteArrayOutputStream bytes;
+        ObjectOutputStream out;
+
+        mixed = new Mixed(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, mixed.toLong());
+        assertEquals(Long.valueOf(Long.MAX_VALUE), mixed.getValue());
+        assertEquals(-1, mixed.toInt());
+        assertEquals(1.5f, new Mixed(1.5d).toFloat(), 0);
+        assertEquals(1.1, new Mixed(1.1f).toDouble(), 0);
+        assertEquals("1.1", new Mixed(1.1f).toString());
+        assertEquals("d:1.100000023841858;", Pherialize.serialize(new Mixed(
+            1.1f)));
+        assertEquals(3, new Mixed(3.9d).toInt());
+        assertEquals(0, new Mixed(false).toInt());
+        assertFalse(new Mixed(0.0d).toBoolean());
+        assertTrue(new Mixed('x').toBoolean());
+        assertEquals(Integer.valueOf(42), new Mixed(Integer.valueOf(42))
+            .getValue());
+
+        mixed = new Mixed(12345);
+        bytes = new ByteArrayOutputStream();
+        out = new ObjectOutputStream(bytes);
+        out.writeObject(mixed);
+        out.close();
+        assertEquals(mixed, new ObjectInputStream(new ByteArrayInputStream(
+            bytes.toByteArray())).readObject());
+    }
 }
@@ -24,10 +24,13 @@
 package de.ailis.pherialize;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import de.ailis.pherialize.test.Address;
 
 
 /**
@@ -79,4 +82,168 @@ public class PherializeTest extends TestCase
         data = Pherialize.unserialize(s, Charset.forName("UTF-8"));
         assertEquals(s, Pherialize.serialize(data));
     }
+
+
+    /**
+     * Tests serializing a Serializable object and unserializing it again
+     */
+
+    public void testSerializableRoundTrip()
+    {
+        ClassRegistry registry;
+        Unserializer unserializer;
+        Address address;
+
+        registry = new ClassRegistry();
+        registry.register(Address.class);
+        unserializer = new Unserializer(Pherialize.serialize(new Address(
+            "Main Street", 42, "Arthur Dent")));
+        unserializer.setClassRegistry(registry);
+        address = (Address) unserializer.unserializeObject().getValue();
+        assertEquals("Main Street", address.getStreet());
+        assertEquals(42, address.getNumber());
+        assertEquals("Arthur Dent", address.getTenant());
+    }
+
+
+    /**
+     * Tests extracting values by path
+     */
+
+    public void testExtract()
+    {
+        String s;
+        byte[] data;
+        Unserializer unserializer;
+
+        s = "a:3:{s:4:\"user\";a:2:{s:5:\"prefs\";a:1:{s:4:\"lang\";"
+            + "s:2:\"de\";}s:4:\"tags\";a:2:{i:0;s:1:\"a\";i:1;R:3;}}"
+            + "s:5:\"count\";i:7;s:3:\"obj\";O:3:\"Foo\":1:{"
+            + "s:8:\"\u0000Foo\u0000bar\";i:5;}}";
+        data = s.getBytes();
+        assertEquals("de", Pherialize.extract(data, "user", "prefs", "lang")
+            .toString());
+        assertEquals(7, Pherialize.extract(data, "count").toInt());
+        assertEquals("a", Pherialize.extract(data, "user", "tags", "0")
+            .toString());
+        assertEquals("de", Pherialize.extract(data, "user", "tags", "1")
+            .toArray().getString("lang"));
+        assertEquals(5, Pherialize.extract(data, "obj", "bar").toInt());
+        assertEquals(3, Pherialize.extract(data).toArray().size());
+        assertNull(Pherialize.extract(data, "missing"));
+        assertNull(Pherialize.extract(data, "count", "x"));
+        assertNull(Pherialize.extract(data, "user", "tags", "01"));
+
+        unserializer = new Unserializer(s + "i:1;");
+        assertEquals(7, unserializer.extract("count").toInt());
+        assertEquals(1, unserializer.unserializeObject().toInt());
+        assertFalse(unserializer.hasMoreObjects());
+    }
+
+
+    /**
+     * Tests extracting values through PHP objects, registered objects and
+     * past 64 bit integer keys
+     */
+
+    public void testExtractObjects()
+    {
+        String s;
+        ClassRegistry registry;
+        Unserializer unserializer;
+
+        s = "a:2:{i:4294967296;s:1:\"x\";s:1:\"o\";a:1:{i:0;s:1:\"y\";}}";
+        assertEquals("x", Pherialize.extract(s.getBytes(), "4294967296")
+            .toString());
+        assertEquals("y", Pherialize.extract(s.getBytes(), "o", "0")
+            .toString());
+
+        s = "a:2:{s:1:\"o\";O:3:\"Foo\":2:{"
+            + "s:6:\"\u0000*\u0000bar\";a:1:{i:0;s:1:\"y\";}"
+            + "s:3:\"ref\";R:3;}s:4:\"addr\";O:7:\"Address\":2:{"
+            + "s:6:\"street\";s:4:\"Main\";s:6:\"tenant\";R:3;}}";
+        assertEquals("y", Pherialize.extract(s.getBytes(), "o", "bar", "0")
+            .toString());
+        assertEquals("y", Pherialize.extract(s.getBytes(), "o", "ref")
+            .toArray().getString(0));
+        assertNull(Pherialize.extract(s.getBytes(), "o", "missing"));
+        assertEquals("y", Pherialize.extract(s.getBytes(), "addr", "tenant")
+            .toArray().getString(0));
+
+        registry = new ClassRegistry();
+        registry.register(Address.class);
+        unserializer = new Unserializer(s);
+        unserializer.setClassRegistry(registry);
+        assertEquals("y", unserializer.extract("addr", "tenant").toArray()
+            .getString(0));
+        unserializer = new Unserializer(s);
+        unserializer.setClassRegistry(registry);
+        assertEquals("Main", unserializer.extract("addr", "street")
+            .toString());
+    }
+
+
+    /**
+     * Tests the reusable serializers and unserializers of the threads
+     *
+     * @throws InterruptedException
+     *             When interrupted
+     */
+
+    public void testThreads() throws InterruptedException
+    {
+        final List<Object> list;
+        final String s;
+        final List<Throwable> errors;
+        Thread[] threads;
+        int i;
+
+        list = new ArrayList<Object>();
+        list.add("\u00e4");
+        list.add(list);
+        s = "a:2:{i:0;s:2:\"\u00e4\";i:1;R:1;}";
+        errors = new ArrayList<Throwable>();
+        threads = new Thread[4];
+        for (i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    Charset latin1;
+                    MixedArray array;
+                    int j;
+
+                    latin1 = Charset.forName("ISO-8859-1");
+                    try
+                    {
+                        for (j = 0; j < 1000; j++)
+                        {
+                            assertEquals(s, Pherialize.serialize(list));
+                            assertEquals("a:2:{i:0;s:1:\"\u00e4\";i:1;R:1;}",
+                                Pherialize.serialize(list, latin1));
+                            array = Pherialize.unserialize(s).toArray();
+                            assertEquals("\u00e4", array.getString(0));
+                            assertSame(array, array.getArray(1));
+                            assertEquals("\u00e4", Pherialize.unserialize(
+                                Pherialize.serialize(list, latin1), latin1)
+                                .toArray().getString(0));
+                        }
+                    }
+                    catch (final Throwable e)
+                    {
+                        synchronized (errors)
+                        {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (i = 0; i < threads.length; i++)
+            threads[i].join();
+        assertEquals("[]", errors.toString());
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import de.ailis.pherialize.exceptions.UnserializeException;
+
+
+/**
+ * Tests the PullParser class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class PullParserTest extends TestCase
+{
+    /** Serialized test data containing all token types */
+    private static final String DATA = "a:3:{i:0;s:3:\"foo\";s:3:\"bar\";"
+        + "a:4:{i:0;d:1.5;i:1;b:1;i:2;N;i:3;R:2;}i:2;O:3:\"Foo\":1:{"
+        + "s:1:\"x\";i:9223372036854775807;}}";
+
+
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(PullParserTest.class);
+    }
+
+
+    /**
+     * Tests reading all tokens
+     */
+
+    public void testTokens()
+    {
+        PullParser parser;
+
+        parser = new PullParser(DATA.getBytes());
+        assertTrue(parser.hasNext());
+        assertEquals(PullParser.START_ARRAY, parser.nextToken());
+        assertEquals(3, parser.getSize());
+        assertEquals(1, parser.getDepth());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertTrue(parser.isIntegerKey());
+        assertEquals(0, parser.getInt());
+        assertEquals(PullParser.STRING, parser.nextToken());
+        assertEquals("foo", parser.getString());
+        assertEquals(3, parser.getStringLength());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertFalse(parser.isIntegerKey());
+        assertEquals("bar", parser.getString());
+        assertEquals(PullParser.START_ARRAY, parser.nextToken());
+        assertEquals(4, parser.getSize());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertEquals(PullParser.DOUBLE, parser.nextToken());
+        assertEquals(1.5, parser.getDouble(), 0);
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertEquals(PullParser.BOOL, parser.nextToken());
+        assertTrue(parser.getBoolean());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertEquals(PullParser.NULL, parser.nextToken());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertEquals(PullParser.REFERENCE, parser.nextToken());
+        assertEquals(2, parser.getReference());
+        assertEquals(PullParser.END, parser.nextToken());
+        assertEquals(1, parser.getDepth());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertEquals(2, parser.getInt());
+        assertEquals(PullParser.START_OBJECT, parser.nextToken());
+        assertEquals("Foo", parser.getClassName());
+        assertEquals(1, parser.getSize());
+        assertEquals(PullParser.KEY, parser.nextToken());
+        assertEquals("x", parser.getString());
+        assertEquals(PullParser.INT, parser.nextToken());
+        assertEquals(Long.MAX_VALUE, parser.getLong());
+        try
+        {
+            parser.getInt();
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+        assertEquals(PullParser.END, parser.nextToken());
+        assertEquals(PullParser.END, parser.nextToken());
+        assertEquals(0, parser.getDepth());
+        assertFalse(parser.hasNext());
+    }
+
+
+    /**
+     * Tests skipping values
+     */
+
+    public void testSkipValue()
+    {
+        PullParser parser;
+        int strings;
+
+        parser = new PullParser(new ByteArrayInputStream((DATA + "i:-5;")
+            .getBytes()));
+        assertEquals(PullParser.START_ARRAY, parser.nextToken());
+        strings = 0;
+        while (parser.nextToken() == PullParser.KEY)
+        {
+            if (!parser.isIntegerKey() && parser.getString().equals("bar"))
+                assertTrue(parser.skipValue());
+            else if (parser.nextToken() == PullParser.STRING)
+                strings++;
+            else if (parser.getToken() == PullParser.START_OBJECT)
+            {
+                assertFalse(parser.skipValue());
+                assertEquals(PullParser.END, parser.getToken());
+            }
+        }
+        assertEquals(PullParser.END, parser.getToken());
+        assertEquals(1, strings);
+        assertEquals(PullParser.INT, parser.nextToken());
+        assertEquals(-5, parser.getInt());
+        assertFalse(parser.hasNext());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * $Id$
+ * Copyright (c) 2009 Klaus Reimer
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package de.ailis.pherialize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import de.ailis.pherialize.exceptions.SerializeException;
+
+
+/**
+ * Tests the SerializedWriter class
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class SerializedWriterTest extends TestCase
+{
+    /**
+     * Returns the test suite.
+     *
+     * @return The test suite
+     */
+
+    public static Test suite()
+    {
+        return new TestSuite(SerializedWriterTest.class);
+    }
+
+
+    /**
+     * Writes the test rows with the specified writer.
+     *
+     * @param writer
+     *            The writer
+     */
+
+    private static void writeRows(final SerializedWriter writer)
+    {
+        int i;
+
+        writer.beginArray(3);
+        for (i = 0; i < 3; i++)
+        {
+            writer.key(i).beginArray(6);
+            writer.key("id").value(i);
+            writer.key("name").value("Größe " + i);
+            writer.key("price").value(i * 1.25);
+            writer.key("active").value(i % 2 == 0);
+            writer.key("note").value((String) null);
+            writer.key("big").value(i * 10000000000L);
+            writer.end();
+        }
+        writer.end();
+    }
+
+
+    /**
+     * Returns the test rows as Java objects.
+     *
+     * @return The rows
+     */
+
+    private static List<Object> createRows()
+    {
+        List<Object> rows;
+        Map<String, Object> row;
+        int i;
+
+        rows = new ArrayList<Object>();
+        for (i = 0; i < 3; i++)
+        {
+            row = new LinkedHashMap<String, Object>();
+            row.put("id", Integer.valueOf(i));
+            row.put("name", "Größe " + i);
+            row.put("price", Double.valueOf(i * 1.25));
+            row.put("active", Boolean.valueOf(i % 2 == 0));
+            row.put("note", null);
+            row.put("big", Long.valueOf(i * 10000000000L));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+
+    /**
+     * Tests that the writer output is identical to the serializer output
+     *
+     * @throws IOException
+     *             When writing fails
+     */
+
+    public void testSerializerCompatibility() throws IOException
+    {
+        SerializedWriter writer;
+        ByteArrayOutputStream expected, actual;
+        MixedObject object;
+
+        writer = new SerializedWriter();
+        writeRows(writer);
+        assertEquals(0, writer.getDepth());
+        assertEquals(Pherialize.serialize(createRows()), writer.toString());
+
+        expected = new ByteArrayOutputStream();
+        new Serializer().serialize(createRows(), expected);
+        actual = new ByteArrayOutputStream();
+        writer = new SerializedWriter(actual);
+        writeRows(writer);
+        writer.flush();
+        assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+
+        object = new MixedObject("Foo", 1);
+        object.put("bar", new Mixed(5));
+        writer = new SerializedWriter();
+        writer.beginObject("Foo", 1).key("bar").value(5).end();
+        assertEquals(Pherialize.serialize(object), writer.toString());
+
+        object = new MixedObject("K\u00e4se", 1);
+        object.put("bar", new Mixed(5));
+        writer = new SerializedWriter();
+        writer.beginObject("K\u00e4se", 1).key("bar").value(5).end();
+        assertEquals("O:5:\"K\u00e4se\":1:{s:3:\"bar\";i:5;}", writer
+            .toString());
+        assertEquals(Pherialize.serialize(object), writer.toString());
+        actual = new ByteArrayOutputStream();
+        writer = new SerializedWriter(actual);
+        writer.beginObject("K\u00e4se", 1).key("bar").value(5).end();
+        writer.flush();
+        assertEquals("O:5:\"K\u00e4se\":1:{s:3:\"bar\";i:5;}", actual
+            .toString("UTF-8"));
+    }
+
+
+    /**
+     * Tests writing an invalid structure
+     */
+
+    public void testInvalidStructure()
+    {
+        SerializedWriter writer;
+
+        writer = new SerializedWriter();
+        try
+        {
+            writer.key("foo");
+            fail("Expected SerializeException");
+        }
+        catch (final SerializeException e)
+        {
+            // Expected
+        }
+        writer.beginArray(1);
+        try
+        {
+            writer.value(1);
+            fail("Expected SerializeException");
+        }
+        catch (final SerializeException e)
+        {
+            // Expected
+        }
+        writer.key(0);
+        try
+        {
+            writer.end();
+            fail("Expected SerializeException");
+        }
+        catch (final SerializeException e)
+        {
+            // Expected
+        }
+        writer.value(1);
+        try
+        {
+            writer.key(1);
+            fail("Expected SerializeException");
+        }
+        catch (final SerializeException e)
+        {
+            // Expected
+        }
+        writer.end();
+        assertEquals("a:1:{i:0;i:1;}", writer.toString());
+    }
+}
@@ -23,15 +23,23 @@
 
 package de.ailis.pherialize;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import de.ailis.pherialize.test.CustomClass;
+import de.ailis.pherialize.test.Event;
+import de.ailis.pherialize.test.PrimitiveClass;
 
 
 /**
@@ -82,6 +90,57 @@ public class SerializerTest extends TestCase
     }
 
 
+    /**
+     * Tests the byte lengths of serialized strings with multibyte
+     * characters, surrogate pairs and unpaired surrogates in different
+     * charsets
+     *
+     * @throws IOException
+     *             When serialization fails
+     */
+
+    public void testSerializeStringLengths() throws IOException
+    {
+        String[] tests;
+        String[] charsets;
+        StringBuilder builder;
+        ByteArrayOutputStream expected, actual;
+        Charset charset;
+        int i;
+
+        builder = new StringBuilder();
+        for (i = 0; i < 3000; i++) builder.append("a\u00e4\u20ac\ud83d\ude00");
+        tests = new String[] { "", "ASCII only", "\u00e4\u00f6\u00fc",
+            "\u20ac 5", "\ud83d\ude00 smile", "lone \ud800 high",
+            "lone \udc00 low", "end \ud83d", "\ude00\ud83d reversed",
+            builder.toString() };
+        charsets = new String[] { "UTF-8", "ISO-8859-1", "windows-1252",
+            "UTF-16LE" };
+        for (final String name : charsets)
+        {
+            charset = Charset.forName(name);
+            for (final String test : tests)
+            {
+                assertEquals("s:" + test.getBytes(charset).length + ":\""
+                    + test + "\";", new Serializer(charset).serialize(test));
+
+                expected = new ByteArrayOutputStream();
+                expected.write(("s:" + test.getBytes(charset).length + ":\"")
+                    .getBytes(charset.name().equals("UTF-16LE") ? "ASCII"
+                        : name));
+                expected.write(test.getBytes(charset));
+                expected.write('"');
+                expected.write(';');
+                actual = new ByteArrayOutputStream();
+                new Serializer(charset).serialize(test, actual);
+                assertEquals(name + ": " + test, new String(expected
+                    .toByteArray(), "ISO-8859-1"), new String(actual
+                    .toByteArray(), "ISO-8859-1"));
+            }
+        }
+    }
+
+
     /**
      * Tests serializing a string
      */
@@ -268,6 +327,88 @@ public class SerializerTest extends TestCase
     }
 
 
+    /**
+     * Creates a graph with the specified number of nodes followed by
+     * references to the first and the last node.
+     *
+     * @param max
+     *            The number of nodes
+     * @return The graph
+     */
+
+    private static List<Object> createReferenceGraph(final int max)
+    {
+        List<Object> graph;
+        List<Object> first, last;
+        int i;
+
+        graph = new ArrayList<Object>();
+        first = null;
+        last = null;
+        for (i = 0; i < max; i++)
+        {
+            last = new ArrayList<Object>();
+            if (first == null) first = last;
+            graph.add(last);
+        }
+        graph.add(first);
+        graph.add(last);
+        return graph;
+    }
+
+
+    /**
+     * Returns the shortest time of five runs needed to serialize the
+     * specified graph.
+     *
+     * @param graph
+     *            The graph to serialize
+     * @return The time in nanoseconds
+     */
+
+    private static long timeSerialize(final List<Object> graph)
+    {
+        long best, time;
+        int i;
+
+        best = Long.MAX_VALUE;
+        for (i = 0; i < 5; i++)
+        {
+            time = System.nanoTime();
+            Pherialize.serialize(graph);
+            best = Math.min(best, System.nanoTime() - time);
+        }
+        return best;
+    }
+
+
+    /**
+     * Tests serializing a large graph with references. Serializing 16 times
+     * as many nodes must take roughly 16 times as long. A quadratic history
+     * scan would take about 256 times as long.
+     */
+
+    public void testSerializeLargeReferenceGraph()
+    {
+        List<Object> small, large;
+        String result;
+        long smallTime, largeTime;
+
+        small = createReferenceGraph(20000);
+        large = createReferenceGraph(320000);
+        result = Pherialize.serialize(small);
+        assertTrue(result.startsWith("a:20002:{i:0;a:0:{}i:1;a:0:{}"));
+        assertTrue(result.endsWith("i:20000;R:2;i:20001;R:20001;}"));
+        result = Pherialize.serialize(large);
+        assertTrue(result.endsWith("i:320000;R:2;i:320001;R:320001;}"));
+
+        smallTime = timeSerialize(small);
+        largeTime = timeSerialize(large);
+        assertTrue("20000 nodes: " + smallTime + " ns, 320000 nodes: "
+            + largeTime + " ns", largeTime < smallTime * 64);
+    }
+
+
     /**
      * Tests serializing a complex array
      */
@@ -416,4 +557,241 @@ public class SerializerTest extends TestCase
         s2 = Pherialize.serialize(array);
         assertEquals(s1, s2);
     }
+
+
+    /**
+     * Tests serializing into an output stream
+     *
+     * @throws IOException
+     *             When serialization fails
+     */
+
+    public void testSerializeToStream() throws IOException
+    {
+        Map<Object, Object> test;
+        StringBuilder builder;
+        ByteArrayOutputStream stream;
+        Charset charset;
+        int i;
+
+        charset = Charset.forName("UTF-8");
+        builder = new StringBuilder();
+        for (i = 0; i < 2000; i++) builder.append("Что такое?");
+        test = new LinkedHashMap<Object, Object>();
+        test.put("long", builder.toString());
+        test.put("note", "Что такое машинное обучение?");
+        test.put(Integer.valueOf(-12), Long.valueOf(Long.MIN_VALUE));
+        test.put(Integer.valueOf(7), new Person("Arthur Dent", 42, true,
+            Character.valueOf('x')));
+        test.put("ref", test);
+
+        stream = new ByteArrayOutputStream();
+        new Serializer(charset).serialize(test, stream);
+        assertEquals(Pherialize.serialize(test), new String(stream
+            .toByteArray(), charset));
+    }
+
+
+    /**
+     * Tests serializing into a writable byte channel
+     *
+     * @throws IOException
+     *             When serialization fails
+     */
+
+    public void testSerializeToChannel() throws IOException
+    {
+        List<Object> test;
+        ByteArrayOutputStream stream;
+        Charset charset;
+        int i;
+
+        charset = Charset.forName("UTF-8");
+        test = new ArrayList<Object>();
+        for (i = 0; i < 5000; i++) test.add(Integer.valueOf(i * 1000));
+        test.add(Double.valueOf(-10.1));
+
+        stream = new ByteArrayOutputStream();
+        new Serializer(charset).serialize(test, Channels.newChannel(stream));
+        assertEquals(Pherialize.serialize(test), new String(stream
+            .toByteArray(), charset));
+    }
+
+
+    /**
+     * Tests reusing a serializer for multiple serializations
+     */
+
+    public void testSerializeReuse()
+    {
+        Serializer serializer;
+        List<Object> test;
+
+        serializer = new Serializer();
+        test = new ArrayList<Object>();
+        test.add(Long.valueOf(-9876543210L));
+        assertEquals("a:1:{i:0;d:-9876543210;}", serializer.serialize(test));
+        assertEquals("s:4:\"Test\";", serializer.serialize("Test"));
+        assertEquals("i:1;", serializer.serialize(Integer.valueOf(1)));
+
+        // Each object has its own reference history
+        assertEquals("a:1:{i:0;d:-9876543210;}", serializer.serialize(test));
+        assertEquals("a:1:{i:0;d:-9876543210;}", serializer.serialize(test));
+        serializer.reset();
+        assertEquals("a:1:{i:0;d:-9876543210;}", serializer.serialize(test));
+    }
+
+
+    /**
+     * Tests serializing a list of serializable objects of the same class
+     */
+
+    public void testSerializeSerializableList()
+    {
+        List<Object> test;
+        StringBuilder expected;
+        int i;
+
+        test = new ArrayList<Object>();
+        expected = new StringBuilder("a:100:{");
+        for (i = 0; i < 100; i++)
+        {
+            test.add(new Person("Person " + i, i, i % 2 == 0, null));
+            expected.append("i:" + i + ";O:6:\"Person\":4:{s:4:\"name\";s:"
+                + ("Person " + i).length() + ":\"Person " + i
+                + "\";s:3:\"age\";i:" + i + ";s:9:\"earthling\";b:"
+                + (i % 2 == 0 ? 1 : 0) + ";s:7:\"special\";N;}");
+        }
+        expected.append("}");
+        assertEquals(expected.toString(), Pherialize.serialize(test));
+        assertSame(ClassDescriptor.forClass(Person.class), ClassDescriptor
+            .forClass(Person.class));
+    }
+
+
+    /**
+     * Tests serializing a Serializable object with primitive fields. The
+     * primitive values must occupy reference slots.
+     */
+
+    public void testSerializePrimitiveFields()
+    {
+        List<Object> list;
+
+        list = new ArrayList<Object>();
+        list.add(new PrimitiveClass(list));
+        assertEquals(
+            "a:1:{i:0;O:14:\"PrimitiveClass\":9:{s:9:\"byteValue\";i:-8;s:10:\"shortValue\";i:1600;s:8:\"intValue\";i:-70000;s:9:\"longValue\";d:3000000000;s:10:\"floatValue\";d:1.5;s:11:\"doubleValue\";d:-10.1;s:12:\"booleanValue\";b:1;s:9:\"charValue\";s:1:\"c\";s:6:\"object\";R:1;}}",
+            Pherialize.serialize(list));
+    }
+
+
+    /**
+     * Tests serializing an object with an inherited field which can't be made
+     * accessible. Such fields are skipped instead of failing the
+     * serialization.
+     */
+
+    public void testSerializeInaccessibleField()
+    {
+        MixedArray properties;
+
+        properties = Pherialize.unserialize(
+            Pherialize.serialize(new Event("source", "Click"))).toArray();
+        assertEquals("Click", properties.getString("name"));
+    }
+
+
+    /**
+     * Tests serializing an object of a JDK class with a no-arg constructor
+     * which can't be made accessible
+     *
+     * @throws IOException
+     *             When the address can't be created
+     */
+
+    public void testSerializeInaccessibleConstructor() throws IOException
+    {
+        assertTrue(Pherialize.serialize(
+            InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 })).startsWith(
+            "O:12:\"Inet4Address\":"));
+    }
+
+
+    /**
+     * Tests serializing large root containers in parallel
+     *
+     * @throws IOException
+     *             When serializing fails
+     */
+
+    public void testSerializeParallel() throws IOException
+    {
+        ForkJoinPool pool;
+        List<Object> list, element, inner, shared;
+        Map<String, Object> map;
+        ByteArrayOutputStream stream;
+        MixedArray array;
+        Object[] values;
+        String expected;
+        int i;
+
+        list = new ArrayList<Object>();
+        map = new LinkedHashMap<String, Object>();
+        values = new Object[5000];
+        for (i = 0; i < 5000; i++)
+        {
+            inner = new ArrayList<Object>();
+            inner.add(Integer.valueOf(i));
+            element = new ArrayList<Object>();
+            element.add("Element \u00e4 " + i);
+            element.add(inner);
+            element.add(inner);
+            element.add(list);
+            element.add(Double.valueOf(i * 1.5));
+            list.add(element);
+            element = new ArrayList<Object>();
+            element.add(inner);
+            element.add(inner);
+            element.add(map);
+            map.put("key" + i, element);
+            values[i] = new Object[] { inner, Integer.valueOf(i), values };
+        }
+
+        pool = new ForkJoinPool(4);
+        try
+        {
+            expected = new Serializer().serialize(list);
+            assertEquals(expected, new Serializer().serialize(list, pool));
+            assertEquals(new Serializer().serialize(values),
+                new Serializer().serialize(values, pool));
+            assertEquals(new Serializer().serialize(map),
+                new Serializer().serialize(map, pool));
+            stream = new ByteArrayOutputStream();
+            new Serializer().serialize(list, stream, pool);
+            assertEquals(expected, stream.toString("UTF-8"));
+
+            // Small roots and other types are serialized sequentially
+            assertEquals(new Serializer().serialize(list.get(0)),
+                new Serializer().serialize(list.get(0), pool));
+            assertEquals("s:3:\"foo\";", new Serializer().serialize("foo",
+                pool));
+
+            // Objects shared across chunks are written once per chunk
+            shared = new ArrayList<Object>();
+            shared.add("shared");
+            list = new ArrayList<Object>();
+            for (i = 0; i < 2000; i++)
+                list.add(shared);
+            array = Pherialize.unserialize(new Serializer().serialize(list,
+                pool)).toArray();
+            assertEquals(2000, array.size());
+            assertEquals("shared", array.getArray(0).getString(0));
+            assertEquals("shared", array.getArray(1999).getString(0));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
 }
@@ -23,9 +23,25 @@
 
 package de.ailis.pherialize;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import de.ailis.pherialize.exceptions.UnserializeException;
+import de.ailis.pherialize.test.Address;
+import de.ailis.pherialize.test.Building;
+import de.ailis.pherialize.test.FailingList;
 
 
 /**
@@ -75,6 +91,40 @@ public class UnserializerTest extends TestCase
     }
 
 
+    /**
+     * Tests unserializing a UTF-8 string from raw bytes
+     */
+
+    public void testUnserializeUnicodeBytes()
+    {
+        byte[] data;
+
+        data = "s:52:\"Что такое машинное обучение?\";".getBytes(Charset
+            .forName("UTF-8"));
+        assertEquals("Что такое машинное обучение?",
+            Pherialize.unserialize(data).toString());
+    }
+
+
+    /**
+     * Tests unserializing a ISO-8859-1 string from a byte array region
+     */
+
+    public void testUnserializeBytesRegion()
+    {
+        Charset charset;
+        byte[] data;
+        Unserializer unserializer;
+
+        charset = Charset.forName("ISO-8859-1");
+        data = "xxs:5:\"Größe\";i:1;yy".getBytes(charset);
+        assertEquals(20, data.length);
+        unserializer = new Unserializer(data, 2, 16, charset);
+        assertEquals("Größe", unserializer.unserializeObject().toString());
+        assertEquals(1, unserializer.unserializeObject().toInt());
+    }
+
+
     /**
      * Tests unserializing an integer
      */
@@ -104,6 +154,55 @@ public class UnserializerTest extends TestCase
     }
 
 
+    /**
+     * Tests unserializing doubles which are not handled by the fast path
+     */
+
+    public void testUnserializeSpecialDouble()
+    {
+        assertEquals(1.5e300, Pherialize.unserialize("d:1.5E+300;")
+            .toDouble(), 0);
+        assertEquals(0.1234567890123456789, Pherialize.unserialize(
+            "d:0.1234567890123456789;").toDouble(), 0);
+        assertEquals(Double.POSITIVE_INFINITY, Pherialize.unserialize(
+            "d:INF;").toDouble(), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, Pherialize.unserialize(
+            "d:-INF;").toDouble(), 0);
+        assertTrue(Double.isNaN(Pherialize.unserialize("d:NAN;").toDouble()));
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(
+            Pherialize.unserialize("d:-0;").toDouble()));
+        assertEquals(Double.class, Pherialize.unserialize("d:3;").getValue()
+            .getClass());
+    }
+
+
+    /**
+     * Tests unserializing invalid numbers
+     */
+
+    public void testUnserializeInvalidNumber()
+    {
+        try
+        {
+            Pherialize.unserialize("i:2147483648;");
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+        try
+        {
+            Pherialize.unserialize("i:12a;");
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+    }
+
+
     /**
      * Tests unserializing a Boolean
      */
@@ -215,4 +314,574 @@ public class UnserializerTest extends TestCase
         assertSame(ford, arthur.getArray("comrade"));
         assertSame(arthur, ford.getArray("comrade"));
     }
+
+
+    /**
+     * Tests unserializing multiple concatenated values from an input stream
+     * which delivers the data in small chunks.
+     */
+
+    public void testUnserializeStream()
+    {
+        StringBuilder builder;
+        String longString, data;
+        InputStream stream;
+        Unserializer unserializer;
+        MixedArray array;
+        int i;
+
+        builder = new StringBuilder();
+        for (i = 0; i < 2000; i++) builder.append("Что такое?");
+        longString = builder.toString();
+        data = Pherialize.serialize(longString)
+            + "a:3:{i:0;s:4:\"Test\";i:1;d:-10.1;i:2;R:2;}"
+            + "a:2:{i:0;b:1;i:1;R:2;}N;";
+        stream = new ByteArrayInputStream(data.getBytes(Charset
+            .forName("UTF-8")))
+        {
+            @Override
+            public synchronized int read(final byte[] b, final int off,
+                final int len)
+            {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+
+        unserializer = new Unserializer(stream);
+        assertTrue(unserializer.hasMoreObjects());
+        assertEquals(longString, unserializer.unserializeObject().toString());
+        array = unserializer.unserializeObject().toArray();
+        assertEquals("Test", array.getString(0));
+        assertEquals(-10.1, array.getDouble(1), 0);
+        assertSame(array.get(0), array.get(2));
+        array = unserializer.unserializeObject().toArray();
+        assertTrue(array.getBoolean(0));
+        assertTrue(array.getBoolean(1));
+        assertTrue(unserializer.hasMoreObjects());
+        assertNull(unserializer.unserializeObject());
+        assertFalse(unserializer.hasMoreObjects());
+    }
+
+
+    /**
+     * Tests unserializing from a readable byte channel
+     */
+
+    public void testUnserializeChannel()
+    {
+        String data;
+        Unserializer unserializer;
+
+        data = "s:52:\"Что такое машинное обучение?\";i:42;";
+        unserializer = new Unserializer(Channels.newChannel(
+            new ByteArrayInputStream(data.getBytes(Charset.forName("UTF-8")))));
+        assertEquals("Что такое машинное обучение?", unserializer
+            .unserializeObject().toString());
+        assertEquals(42, unserializer.unserializeObject().toInt());
+        assertFalse(unserializer.hasMoreObjects());
+    }
+
+
+    /**
+     * Tests unserializing truncated data from a stream
+     */
+
+    public void testUnserializeTruncatedStream()
+    {
+        Unserializer unserializer;
+
+        unserializer = new Unserializer(new ByteArrayInputStream(
+            "a:2:{i:0;s:10:\"Test".getBytes()));
+        try
+        {
+            unserializer.unserializeObject();
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+    }
+
+
+    /**
+     * Tests unserializing a PHP object into a registered Java class
+     */
+
+    public void testUnserializeRegisteredObject()
+    {
+        ClassRegistry registry;
+        Unserializer unserializer;
+        MixedArray array;
+        Address address;
+
+        registry = new ClassRegistry();
+        registry.register(Address.class);
+        unserializer = new Unserializer(
+            "a:2:{i:0;O:7:\"Address\":4:{s:6:\"street\";s:11:\"Main Street\";s:9:\"\0*\0number\";s:2:\"42\";s:15:\"\0Address\0tenant\";R:2;s:7:\"unknown\";b:1;}i:1;R:2;}");
+        unserializer.setClassRegistry(registry);
+        array = unserializer.unserializeObject().toArray();
+        address = (Address) array.getMixed(0).getValue();
+        assertEquals("Main Street", address.getStreet());
+        assertEquals(42, address.getNumber());
+        assertSame(address, address.getTenant());
+        assertSame(array.get(0), array.get(1));
+    }
+
+
+    /**
+     * Tests unserializing a PHP object of an unregistered class
+     */
+
+    public void testUnserializeUnregisteredObject()
+    {
+        String data;
+        MixedObject object;
+
+        data = "O:8:\"stdClass\":2:{s:4:\"name\";s:11:\"Arthur Dent\";s:3:\"age\";i:42;}";
+        object = (MixedObject) Pherialize.unserialize(data).toArray();
+        assertEquals("stdClass", object.getClassName());
+        assertEquals("Arthur Dent", object.getString("name"));
+        assertEquals(42, object.getInt("age"));
+        assertEquals(data, Pherialize.serialize(object));
+    }
+
+
+    /**
+     * Tests that the properties of unregistered objects keep their
+     * visibility and that non-ASCII class names are serialized with their
+     * length in bytes
+     *
+     * @throws IOException
+     *             When serializing fails
+     */
+
+    public void testUnserializeObjectVisibility() throws IOException
+    {
+        String data;
+        MixedObject object;
+        Unserializer unserializer;
+        ByteArrayOutputStream stream;
+
+        data = "O:4:\"K\u00e4s\":4:{s:3:\"bar\";i:1;s:6:\"\u0000*\u0000bar\";i:2;"
+            + "s:9:\"\u0000K\u00e4s\u0000bar\";i:3;s:12:\"\u0000Base\u0000secret\";i:4;}";
+        object = (MixedObject) Pherialize.unserialize(data).toArray();
+        assertEquals("K\u00e4s", object.getClassName());
+        assertEquals(4, object.size());
+        assertEquals(2, object.getInt("\u0000*\u0000bar"));
+        assertEquals(1, object.getProperty("bar").toInt());
+        assertEquals(4, object.getProperty("secret").toInt());
+        assertNull(object.getProperty("missing"));
+        assertEquals(data, Pherialize.serialize(object));
+        stream = new ByteArrayOutputStream();
+        new Serializer().serialize(object, stream);
+        assertEquals(data, stream.toString("UTF-8"));
+
+        unserializer = new Unserializer(data);
+        unserializer.setLazy(true);
+        assertEquals(data, Pherialize.serialize(unserializer
+            .unserializeObject()));
+    }
+
+
+    /**
+     * Tests unserializing scalars directly into Java types
+     */
+
+    public void testUnserializeTypedScalar()
+    {
+        assertEquals(Integer.valueOf(42), Pherialize.unserialize("s:2:\"42\";",
+            Integer.class));
+        assertEquals("42", Pherialize.unserialize("i:42;", String.class));
+        assertEquals(Double.valueOf(1.5), Pherialize.unserialize("d:1.5;",
+            double.class));
+        assertEquals(Boolean.TRUE, Pherialize.unserialize("b:1;",
+            Boolean.class));
+        assertEquals(Long.valueOf(0), Pherialize.unserialize("N;", long.class));
+        assertNull(Pherialize.unserialize("N;", String.class));
+    }
+
+
+    /**
+     * Tests unserializing arrays directly into generic collections, maps and
+     * plain Java objects
+     */
+
+    public void testUnserializeTypedArray()
+    {
+        List<Integer> list;
+        Map<String, Address> map;
+        Address[] addresses;
+        Address address;
+        Map<?, ?> plain;
+
+        list = Pherialize.unserialize("a:3:{i:0;i:1;i:1;s:1:\"2\";i:2;d:3;}",
+            new TypeReference<List<Integer>>() {});
+        assertEquals(3, list.size());
+        assertEquals(Integer.valueOf(1), list.get(0));
+        assertEquals(Integer.valueOf(2), list.get(1));
+        assertEquals(Integer.valueOf(3), list.get(2));
+
+        map = Pherialize.unserialize(
+            "a:2:{s:4:\"home\";a:2:{s:6:\"street\";s:11:\"Main Street\";s:6:\"number\";s:2:\"42\";}s:4:\"work\";R:2;}",
+            new TypeReference<Map<String, Address>>() {});
+        address = map.get("home");
+        assertEquals("Main Street", address.getStreet());
+        assertEquals(42, address.getNumber());
+        assertSame(address, map.get("work"));
+
+        addresses = Pherialize.unserialize(
+            "a:1:{i:0;O:7:\"Address\":2:{s:6:\"street\";s:4:\"Nowh\";s:7:\"unknown\";a:0:{}}}",
+            Address[].class);
+        assertEquals(1, addresses.length);
+        assertEquals("Nowh", addresses[0].getStreet());
+
+        plain = Pherialize.unserialize("a:2:{s:1:\"a\";i:1;i:5;N;}",
+            Map.class);
+        assertEquals(Integer.valueOf(1), plain.get("a"));
+        assertTrue(plain.containsKey(Integer.valueOf(5)));
+        assertNull(plain.get(Integer.valueOf(5)));
+
+        try
+        {
+            Pherialize.unserialize("a:0:{}", FailingList.class);
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+
+    /**
+     * Tests unserializing a PHP object into a registered class through the
+     * type-directed decoder
+     */
+
+    public void testUnserializeTypedRegisteredObject()
+    {
+        ClassRegistry registry;
+        Unserializer unserializer;
+        Object object;
+
+        registry = new ClassRegistry();
+        registry.register(Address.class);
+        unserializer = new Unserializer(
+            "O:7:\"Address\":2:{s:6:\"street\";s:11:\"Main Street\";s:6:\"tenant\";R:1;}");
+        unserializer.setClassRegistry(registry);
+        object = unserializer.unserializeObject(Object.class);
+        assertTrue(object instanceof Address);
+        assertSame(object, ((Address) object).getTenant());
+    }
+
+
+    /**
+     * Tests unserializing a registered object with generic collection, array
+     * and map fields through the default and the type-directed decoder
+     */
+
+    public void testUnserializeRegisteredCollectionFields()
+    {
+        String data;
+        ClassRegistry registry;
+        Unserializer unserializer;
+        Building building;
+        int i;
+
+        data = "O:8:\"Building\":5:{s:4:\"tags\";a:2:{i:0;s:1:\"x\";i:1;N;}"
+            + "s:6:\"floors\";a:2:{i:0;i:1;i:1;s:1:\"2\";}"
+            + "s:5:\"rooms\";a:2:{i:0;i:7;i:1;i:7;}"
+            + "s:7:\"tenants\";a:1:{s:6:\"ground\";s:1:\"3\";}"
+            + "s:7:\"address\";a:1:{s:6:\"street\";s:4:\"Main\";}}";
+        registry = new ClassRegistry();
+        registry.register(Building.class);
+        for (i = 0; i < 2; i++)
+        {
+            unserializer = new Unserializer(data);
+            unserializer.setClassRegistry(registry);
+            if (i == 0)
+                building = (Building) unserializer.unserializeObject()
+                    .getValue();
+            else
+                building = (Building) unserializer
+                    .unserializeObject(Object.class);
+            assertEquals(Arrays.asList("x", null), building.getTags());
+            assertTrue(Arrays.equals(new int[] { 1, 2 }, building
+                .getFloors()));
+            assertEquals(Collections.singleton(Integer.valueOf(7)), building
+                .getRooms());
+            assertEquals(Integer.valueOf(3), building.getTenants()
+                .get("ground"));
+            assertEquals("Main", building.getAddress().getStreet());
+        }
+    }
+
+
+    /**
+     * Tests unserializing array keys through a key cache
+     */
+
+    public void testUnserializeKeyCache()
+    {
+        KeyCache cache;
+        Unserializer unserializer;
+        MixedArray array;
+        Object[] keys;
+
+        cache = new KeyCache(16, 4);
+        unserializer = new Unserializer(
+            "a:2:{i:0;a:2:{s:2:\"id\";i:1;s:5:\"title\";s:1:\"a\";}i:1;a:2:{s:2:\"id\";i:2;s:5:\"title\";s:1:\"b\";}}");
+        unserializer.setKeyCache(cache);
+        assertSame(cache, unserializer.getKeyCache());
+        array = unserializer.unserializeObject().toArray();
+        assertEquals(2, array.getArray(1).getInt("id"));
+        assertEquals("b", array.getArray(1).getString("title"));
+        keys = array.getArray(0).keySet().toArray();
+        assertSame(keys[0].toString(), array.getArray(1).keySet().toArray()[0]
+            .toString());
+        assertNotSame(keys[1].toString(), array.getArray(1).keySet()
+            .toArray()[1].toString());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        unserializer = new Unserializer("a:1:{s:2:\"id\";R:1;}");
+        unserializer.setKeyCache(cache);
+        array = unserializer.unserializeObject().toArray();
+        assertSame(array, array.getArray("id"));
+        assertSame(keys[0].toString(), array.keySet().toArray()[0].toString());
+        assertEquals(2, cache.getHits());
+
+        cache.clear();
+        assertEquals(0, cache.getHits());
+        assertEquals(16, cache.getSize());
+    }
+
+
+    /**
+     * Tests lazy unserialization of nested arrays
+     */
+
+    public void testUnserializeLazy()
+    {
+        String s;
+        Unserializer unserializer;
+        MixedArray root, user;
+
+        s = "a:3:{s:4:\"user\";a:2:{s:4:\"name\";s:6:\"Arthur\";s:3:\"age\";"
+            + "i:42;}s:4:\"list\";a:2:{i:0;s:1:\"x\";i:1;R:2;}s:4:\"self\";"
+            + "R:1;}";
+        unserializer = new Unserializer(s);
+        unserializer.setLazy(true);
+        assertTrue(unserializer.isLazy());
+        root = unserializer.unserializeObject().toArray();
+        assertFalse(((LazyMixedArray) root).isLoaded());
+        assertFalse(unserializer.hasMoreObjects());
+
+        assertSame(root, root.getArray("self"));
+        assertTrue(((LazyMixedArray) root).isLoaded());
+        user = root.getArray("user");
+        assertFalse(((LazyMixedArray) user).isLoaded());
+        assertSame(user, root.getArray("list").getArray(1));
+        assertFalse(((LazyMixedArray) user).isLoaded());
+        assertEquals("Arthur", user.getString("name"));
+        assertEquals(42, user.getInt("age"));
+        assertEquals(s, Pherialize.serialize(new Mixed(root)));
+
+        unserializer = new Unserializer("a:2:{i:0;N;i:1;s:1:\"x\";}");
+        unserializer.setLazy(true);
+        assertEquals("x", unserializer.unserializeObject().toArray()
+            .getString(1));
+
+        try
+        {
+            unserializer = new Unserializer("a:1:{i:0;R:3;}");
+            unserializer.setLazy(true);
+            unserializer.unserializeObject();
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+        try
+        {
+            unserializer = new Unserializer(new ByteArrayInputStream(s
+                .getBytes()));
+            unserializer.setLazy(true);
+            unserializer.unserializeObject();
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+    }
+
+
+    /**
+     * Tests unserializing large arrays in parallel
+     */
+
+    public void testUnserializeParallel()
+    {
+        ForkJoinPool pool;
+        Unserializer unserializer;
+        MixedArray array;
+        StringBuilder local, shared;
+        String name;
+        int i;
+
+        // Each element occupies 8 reference slots and references its own
+        // inner array or the inner array of the first element
+        local = new StringBuilder("a:5000:{");
+        shared = new StringBuilder("a:5000:{");
+        for (i = 0; i < 5000; i++)
+        {
+            name = "Element \u00e4 " + i;
+            local.append("i:" + i + ";a:5:{i:0;a:1:{i:0;i:" + i + ";}i:1;R:"
+                + (3 + 8 * i) + ";i:2;R:1;i:3;s:" + (name.length() + 1)
+                + ":\"" + name + "\";i:4;a:1:{s:2:\"id\";i:" + i + ";}}");
+            shared.append("i:" + i + ";a:5:{i:0;a:1:{i:0;i:" + i + ";}i:1;R:3;"
+                + "i:2;R:1;i:3;s:" + (name.length() + 1) + ":\"" + name
+                + "\";i:4;a:1:{s:2:\"id\";i:" + i + ";}}");
+        }
+        local.append("}");
+        shared.append("}");
+
+        pool = new ForkJoinPool(4);
+        try
+        {
+            unserializer = new Unserializer(local + "i:1;");
+            unserializer.setKeyCache(new KeyCache());
+            array = unserializer.unserializeObject(pool).toArray();
+            assertEquals(1, unserializer.unserializeObject().toInt());
+            assertFalse(unserializer.hasMoreObjects());
+            assertEquals(Pherialize.serialize(Pherialize.unserialize(local
+                .toString())), Pherialize.serialize(array));
+            assertEquals(5000, array.size());
+            assertTrue(array.isPacked());
+            assertEquals("Element \u00e4 4999", array.getArray(4999)
+                .getString(3));
+            assertEquals(4999, array.getArray(4999).getArray(4).getInt("id"));
+            assertSame(array.getArray(4000).getArray(0), array.getArray(4000)
+                .getArray(1));
+            assertSame(array, array.getArray(4000).getArray(2));
+
+            // References across elements are resolved sequentially
+            array = new Unserializer(shared.toString()).unserializeObject(
+                pool).toArray();
+            assertEquals(Pherialize.serialize(Pherialize.unserialize(shared
+                .toString())), Pherialize.serialize(array));
+            assertSame(array.getArray(0).getArray(0), array.getArray(4999)
+                .getArray(1));
+
+            // Small arrays and other values are unserialized sequentially
+            assertEquals(2, new Unserializer("a:2:{i:0;i:1;i:1;R:1;}")
+                .unserializeObject(pool).toArray().size());
+            assertEquals("foo", new Unserializer("s:3:\"foo\";")
+                .unserializeObject(pool).toString());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Tests reusing an unserializer for other data
+     */
+
+    public void testUnserializeReset()
+    {
+        Unserializer unserializer;
+        MixedArray array;
+
+        unserializer = new Unserializer(new ByteArrayInputStream(
+            "a:2:{i:0;a:0:{}i:1;R:2;}".getBytes()));
+        unserializer.setKeyCache(new KeyCache());
+        array = unserializer.unserializeObject().toArray();
+        assertSame(array.getArray(0), array.getArray(1));
+
+        unserializer.reset("a:1:{s:1:\"a\";R:1;}");
+        array = unserializer.unserializeObject().toArray();
+        assertSame(array, array.getArray("a"));
+        assertFalse(unserializer.hasMoreObjects());
+
+        // Resetting in the middle of the data drops the token state
+        unserializer.reset("a:1:{i:0;a:1:{i:0;i:1;}}".getBytes());
+        unserializer.extract("0");
+        unserializer.reset("xs:1:\"b\";".getBytes(), 1, 8);
+        assertEquals("b", unserializer.unserializeObject().toString());
+        assertFalse(unserializer.hasMoreObjects());
+
+        try
+        {
+            unserializer.reset("a:1:{i:0;R:2;}");
+            unserializer.unserializeObject();
+            fail("Expected UnserializeException");
+        }
+        catch (final UnserializeException e)
+        {
+            // Expected
+        }
+    }
+
+
+    /**
+     * Tests that lazy arrays are decoded from their own data after the
+     * unserializer has been reset
+     */
+
+    public void testUnserializeLazyReset()
+    {
+        Unserializer unserializer;
+        MixedArray first, second;
+
+        unserializer = new Unserializer("a:1:{i:0;a:1:{i:0;s:3:\"old\";}}");
+        unserializer.setLazy(true);
+        first = unserializer.unserializeObject().toArray();
+
+        unserializer.reset("a:1:{i:0;a:1:{i:0;s:3:\"new\";}}");
+        second = unserializer.unserializeObject().toArray();
+        assertEquals("old", first.getArray(0).getString(0));
+
+        unserializer.reset("i:1;");
+        assertEquals(1, unserializer.unserializeObject().toInt());
+        assertEquals(1, second.size());
+        assertEquals("new", second.getArray(0).getString(0));
+        assertFalse(unserializer.hasMoreObjects());
+    }
+
+
+    /**
+     * Tests unserializing object references (r:n;) as written by PHP for
+     * objects which appear multiple times in the data
+     */
+
+    public void testUnserializeObjectReference()
+    {
+        String data;
+        MixedArray array;
+        MixedObject object;
+        Unserializer unserializer;
+
+        // serialize([$o, $o]) with $o = new stdClass(); $o->a = 1;
+        data = "a:2:{i:0;O:8:\"stdClass\":1:{s:1:\"a\";i:1;}i:1;r:2;}";
+        array = Pherialize.unserialize(data).toArray();
+        assertEquals(1, array.getArray(0).getInt("a"));
+        assertSame(array.getArray(0), array.getArray(1));
+        assertEquals(1, Pherialize.extract(data.getBytes(), "1", "a").toInt());
+
+        unserializer = new Unserializer(data);
+        unserializer.setLazy(true);
+        array = unserializer.unserializeObject().toArray();
+        assertSame(array.getArray(0), array.getArray(1));
+
+        // serialize($o) with $o = new stdClass(); $o->self = $o;
+        data = "O:8:\"stdClass\":1:{s:4:\"self\";r:1;}";
+        object = (MixedObject) Pherialize.unserialize(data).toArray();
+        assertSame(object, object.getArray("self"));
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize.test;
+
+import java.io.Serializable;
+
+
+/**
+ * Address
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class Address implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = -3516950238871327025L;
+
+    /** The street */
+    private String street;
+
+    /** The house number */
+    private int number;
+
+    /** The tenant */
+    private Object tenant;
+
+
+    /**
+     * Constructor
+     */
+
+    public Address()
+    {
+        super();
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param street
+     *            The street
+     * @param number
+     *            The house number
+     * @param tenant
+     *            The tenant
+     */
+
+    public Address(final String street, final int number, final Object tenant)
+    {
+        super();
+        this.street = street;
+        this.number = number;
+        this.tenant = tenant;
+    }
+
+
+    /**
+     * Returns the street.
+     *
+     * @return The street
+     */
+
+    public String getStreet()
+    {
+        return this.street;
+    }
+
+
+    /**
+     * Returns the house number.
+     *
+     * @return The house number
+     */
+
+    public int getNumber()
+    {
+        return this.number;
+    }
+
+
+    /**
+     * Returns the tenant.
+     *
+     * @return The tenant
+     */
+
+    public Object getTenant()
+    {
+        return this.tenant;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize.test;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Building with generic collection, array and map fields.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class Building implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 7202640366214843950L;
+
+    /** The tags */
+    private List<String> tags;
+
+    /** The floor numbers */
+    private int[] floors;
+
+    /** The room numbers */
+    private Set<Integer> rooms;
+
+    /** The number of tenants per floor name */
+    private Map<String, Integer> tenants;
+
+    /** The address */
+    private Address address;
+
+
+    /**
+     * Returns the tags.
+     *
+     * @return The tags
+     */
+
+    public List<String> getTags()
+    {
+        return this.tags;
+    }
+
+
+    /**
+     * Returns the floor numbers.
+     *
+     * @return The floor numbers
+     */
+
+    public int[] getFloors()
+    {
+        return this.floors;
+    }
+
+
+    /**
+     * Returns the room numbers.
+     *
+     * @return The room numbers
+     */
+
+    public Set<Integer> getRooms()
+    {
+        return this.rooms;
+    }
+
+
+    /**
+     * Returns the number of tenants per floor name.
+     *
+     * @return The number of tenants per floor name
+     */
+
+    public Map<String, Integer> getTenants()
+    {
+        return this.tenants;
+    }
+
+
+    /**
+     * Returns the address.
+     *
+     * @return The address
+     */
+
+    public Address getAddress()
+    {
+        return this.address;
+    }
+}
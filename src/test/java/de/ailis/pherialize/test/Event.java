@@ -0,0 +1,73 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize.test;
+
+import java.util.EventObject;
+
+
+/**
+ * Event with an inherited field of a JDK class which can't be made
+ * accessible on runtimes with a module system.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class Event extends EventObject
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 4387525133584376291L;
+
+    /** The event name */
+    private final String name;
+
+
+    /**
+     * Constructor
+     *
+     * @param source
+     *            The event source
+     * @param name
+     *            The event name
+     */
+
+    public Event(final Object source, final String name)
+    {
+        super(source);
+        this.name = name;
+    }
+
+
+    /**
+     * Returns the event name.
+     *
+     * @return The event name
+     */
+
+    public String getName()
+    {
+        return this.name;
+    }
+}
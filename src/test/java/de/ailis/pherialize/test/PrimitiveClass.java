@@ -0,0 +1,93 @@
+/*
+ * $Id$
+ * Copyright (C) 2009 Klaus Reimer <k@ailis.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+
+package de.ailis.pherialize.test;
+
+import java.io.Serializable;
+
+
+/**
+ * PrimitiveClass
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ * @version $Revision$
+ */
+
+public class PrimitiveClass implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 4021650741934317412L;
+
+    /** A byte value */
+    private final byte byteValue = -8;
+
+    /** A short value */
+    private final short shortValue = 1600;
+
+    /** An int value */
+    private final int intValue = -70000;
+
+    /** A long value */
+    private final long longValue = 3000000000L;
+
+    /** A float value */
+    private final float floatValue = 1.5f;
+
+    /** A double value */
+    private final double doubleValue = -10.1;
+
+    /** A boolean value */
+    private final boolean booleanValue = true;
+
+    /** A char value */
+    private final char charValue = 'c';
+
+    /** A reference to another object */
+    private final Object object;
+
+
+    /**
+     * Constructor
+     *
+     * @param object
+     *            A reference to another object
+     */
+
+    public PrimitiveClass(final Object object)
+    {
+        this.object = object;
+    }
+
+
+    /**
+     * Returns the referenced object.
+     *
+     * @return The referenced object
+     */
+
+    public Object getObject()
+    {
+        return this.object;
+    }
+}